@@ -2,6 +2,12 @@ package cz.cvut.fel.intermodal_planning.general;
 
 import cz.cvut.fel.intermodal_planning.planner.model.Location;
 import cz.cvut.fel.intermodal_planning.planner.model.LocationArea;
+import cz.cvut.fel.intermodal_planning.planner.model.TransportMode;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.RoutingMetric;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.enums.HeuristicType;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.enums.LandmarkSelectionStrategy;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.enums.PriorityQueueType;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.enums.SearchEngineType;
 
 import java.net.URL;
 
@@ -47,6 +53,14 @@ public final class Storage {
     public static final float BIKE_SPEED_MPS = 4.16f;
     public static final float WALK_SPEED_MPS = 1.4f;
 
+    /**
+     * Car congestion over the day, travel time of car edges is multiplied by the factor interpolated
+     * between the given times (seconds since midnight), factors are at least 1
+     */
+    public static final int[] CAR_CONGESTION_PROFILE_TIMES = {0, 6 * 3600, 7 * 3600 + 1800, 9 * 3600,
+            15 * 3600, 16 * 3600 + 1800, 18 * 3600, 20 * 3600};
+    public static final double[] CAR_CONGESTION_PROFILE_FACTORS = {1.0, 1.0, 1.6, 1.2, 1.2, 1.7, 1.3, 1.0};
+
 
     /**
      *  num of cells for distribution grid for informed strategies
@@ -58,6 +72,111 @@ public final class Storage {
 
     public static final int FINDING_PATH_COUNT = 100;
 
+    /**
+     * Number of worker threads of the BatchRoutePlanner
+     */
+    public static int BATCH_PARALLELISM = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Named cost profiles selectable by the requests, dense weights of the graph are precomputed for each of them
+     */
+    public static final String DEFAULT_COST_PROFILE = "default";
+    public static final RoutingMetric[] COST_PROFILES = {
+            new RoutingMetric(DEFAULT_COST_PROFILE),
+            new RoutingMetric("wheelchair")
+                    .withDurationFactor(TransportMode.WALK, 2.5)
+                    .withDisabledMode(TransportMode.BICYCLE)
+                    .withTransferPenalty(TransportMode.TRANSIT, TransportMode.WALK, 180),
+            new RoutingMetric("preferTransit")
+                    .withDurationFactor(TransportMode.CAR, 1.5)
+                    .withTransferPenalty(TransportMode.CAR, TransportMode.WALK, 600)
+                    .withTransferPenalty(TransportMode.CAR, TransportMode.TRANSIT, 600)
+    };
+
+    /**
+     * Priority queue used by the pathfinding
+     */
+    public static PriorityQueueType PRIORITY_QUEUE_TYPE = PriorityQueueType.FOUR_ARY_HEAP;
+
+    /**
+     * Heuristic used by the pathfinding, HAVERSINE and LANDMARKS turn Dijkstra's algorithm into A*
+     */
+    public static HeuristicType HEURISTIC_TYPE = HeuristicType.NONE;
+
+    /**
+     * Pathfinding algorithm used by the metasearch, heuristic is used only by the unidirectional one,
+     * RESUMABLE one continues the cached search trees of the repeated origins
+     */
+    public static SearchEngineType SEARCH_ENGINE = SearchEngineType.UNIDIRECTIONAL;
+
+    /**
+     * File name of the persisted contraction hierarchy, it is stored next to the serialized graph
+     */
+    public static final String CONTRACTION_HIERARCHY_FILE = "graph.ch";
+
+    /**
+     * Hub labels answering the duration queries, they are derived from the contraction hierarchy
+     */
+    public static boolean USE_HUB_LABELS = false;
+    public static final String HUB_LABELS_FILE = "graph.hl";
+
+    /**
+     * Metric-independent contraction hierarchy customized for the RoutingMetric of the query
+     */
+    public static boolean USE_CUSTOMIZABLE_CH = false;
+    public static final String CUSTOMIZABLE_CH_FILE = "graph.cch";
+
+    /**
+     * Number of landmarks of the LANDMARKS heuristic and the strategy of their selection
+     */
+    public static int LANDMARK_COUNT = 16;
+    public static LandmarkSelectionStrategy LANDMARK_SELECTION_STRATEGY = LandmarkSelectionStrategy.AVOID;
+
+    /**
+     * File name of the persisted landmark tables, it is stored next to the serialized graph
+     */
+    public static final String LANDMARK_TABLES_FILE = "graph.landmarks";
+
+    /**
+     * Arc flags pruning of the unidirectional search, the area is partitioned into ARC_FLAGS_GRID_SIZE^2 cells
+     */
+    public static boolean USE_ARC_FLAGS = false;
+    public static final int ARC_FLAGS_GRID_SIZE = 8;
+    public static final String ARC_FLAGS_FILE = "graph.arcflags";
+
+    /**
+     * Size of the isochrone grid cell in thousandths of degree (see Location.latE3)
+     */
+    public static final int ISOCHRONE_CELL_SIZE_E3 = 2;
+
+    /**
+     * Alternative routes can be at most ALTERNATIVE_MAX_STRETCH longer than the optimal one
+     * and can share at most ALTERNATIVE_MAX_SHARING of their duration with the better routes
+     */
+    public static final double ALTERNATIVE_MAX_STRETCH = 0.25;
+    public static final double ALTERNATIVE_MAX_SHARING = 0.75;
+
+    /**
+     * Maximal number of transfers of the routes in the Pareto front (duration, transfers)
+     */
+    public static final int PARETO_MAX_TRANSFERS = 4;
+
+    /**
+     * Maximal number of edge paths in the RouteCache of the metasearch, 0 disables the cache
+     */
+    public static int ROUTE_CACHE_SIZE = 10000;
+
+    /**
+     * Maximal number of E3 cells in the SnappingCache of the candidate nodes, 0 disables the cache
+     */
+    public static int SNAPPING_CACHE_SIZE = 10000;
+
+    /**
+     * Maximal number of search trees kept by the RESUMABLE search engine, every tree takes
+     * about 30 bytes per state of the mode-expanded graph, 0 disables the cache
+     */
+    public static int SEARCH_TREE_CACHE_SIZE = 4;
+
 
     /**
      * Selected test region - Prague
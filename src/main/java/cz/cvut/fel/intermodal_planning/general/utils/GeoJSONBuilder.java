@@ -135,6 +135,34 @@ public class GeoJSONBuilder {
         }
     }
 
+    private void addMultiPolygonsFromIsochrone(List<IsochroneBand> bands) {
+        Feature feature;
+        MultiPolygon multiPolygon;
+
+        featureCollection = new FeatureCollection();
+
+        for (IsochroneBand band : bands) {
+            multiPolygon = new MultiPolygon();
+            for (IsochronePolygon isochronePolygon : band.polygons) {
+                Polygon polygon = new Polygon(toLngLatAlt(isochronePolygon.exterior));
+                for (List<Location> hole : isochronePolygon.holes) {
+                    polygon.addInteriorRing(toLngLatAlt(hole));
+                }
+                multiPolygon.add(polygon);
+            }
+
+            feature = new Feature();
+            feature.setGeometry(multiPolygon);
+            feature.setProperty("duration", band.maxDurationInSeconds);
+
+            featureCollection.add(feature);
+        }
+    }
+
+    private List<LngLatAlt> toLngLatAlt(List<Location> ring) {
+        return ring.stream().map(Location::toLngLatAlt).collect(Collectors.toList());
+    }
+
     public String buildGeoJSONString(Graph<Node, GraphEdge> graph) {
         addPolylinesFromGraph(graph);
 
@@ -181,6 +209,17 @@ public class GeoJSONBuilder {
     }
 
 
+    public String buildGeoJSONStringForIsochrone(List<IsochroneBand> bands) {
+        addMultiPolygonsFromIsochrone(bands);
+
+        try {
+            return objectMapper.writeValueAsString(featureCollection);
+        } catch (JsonProcessingException e) {
+            e.printStackTrace();
+            return "{}";
+        }
+    }
+
     private String buildGeoJSONString(Graph<Node, GraphEdge> graph, TransportMode mode) {
         addPolylinesFromGraph(graph, mode);
 
@@ -0,0 +1,196 @@
+package cz.cvut.fel.intermodal_planning.general.utils;
+
+import cz.cvut.fel.intermodal_planning.planner.model.IsochronePolygon;
+import cz.cvut.fel.intermodal_planning.planner.model.Location;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tracing of the outline of a set of grid cells.
+ * <p>
+ * Cells and their corners are packed as (row &lt;&lt; 32 | column), row grows with latitude, column with longitude.
+ * Every cell side without a neighbouring cell is a boundary edge directed so that the cell lies on its left,
+ * rings follow the edges and turn left at the corners shared by two diagonal cells, so such cells are separate
+ * polygons touching in one point. Exterior rings are counter-clockwise, holes are clockwise.
+ */
+public class OutlineUtils {
+    // directions of the edges in counter-clockwise order: +column, +row, -column, -row
+    private static final int[] ROW_STEP = {0, 1, 0, -1};
+    private static final int[] COLUMN_STEP = {1, 0, -1, 0};
+
+    /**
+     * Outline polygons of the union of the cells
+     *
+     * @param cells packed grid cells
+     * @param cellSize size of the cell in degrees, corner (row, column) lies at (row * cellSize, column * cellSize)
+     * @return polygons with their holes, holes are assigned to the smallest exterior ring containing them
+     */
+    public static List<IsochronePolygon> traceOutline(Set<Long> cells, double cellSize) {
+        // directions of the boundary edges starting in the corner
+        Map<Long, Integer> outgoing = new HashMap<>();
+        for (long cell : cells) {
+            int row = row(cell);
+            int column = column(cell);
+            if (!cells.contains(pack(row - 1, column))) addEdge(outgoing, row, column, 0);
+            if (!cells.contains(pack(row, column + 1))) addEdge(outgoing, row, column + 1, 1);
+            if (!cells.contains(pack(row + 1, column))) addEdge(outgoing, row + 1, column + 1, 2);
+            if (!cells.contains(pack(row, column - 1))) addEdge(outgoing, row + 1, column, 3);
+        }
+
+        List<int[]> exteriors = new ArrayList<>();
+        List<int[]> holes = new ArrayList<>();
+        Set<Long> visited = new HashSet<>();
+        for (Map.Entry<Long, Integer> entry : outgoing.entrySet()) {
+            for (int direction = 0; direction < 4; direction++) {
+                if ((entry.getValue() & 1 << direction) == 0 || visited.contains(entry.getKey() << 2 | direction)) continue;
+
+                int[] ring = traceRing(outgoing, visited, entry.getKey(), direction);
+                if (area(ring) > 0) exteriors.add(ring);
+                else holes.add(ring);
+            }
+        }
+
+        List<IsochronePolygon> polygons = new ArrayList<>();
+        for (int[] exterior : exteriors) {
+            polygons.add(new IsochronePolygon(toLocations(exterior, cellSize)));
+        }
+        for (int[] hole : holes) {
+            // cell on the right of the first edge is inside the hole, its center is tested
+            double row = rightCellRow(hole) + 0.5;
+            double column = rightCellColumn(hole) + 0.5;
+
+            int container = -1;
+            for (int i = 0; i < exteriors.size(); i++) {
+                if (contains(exteriors.get(i), row, column)
+                        && (container == -1 || area(exteriors.get(i)) < area(exteriors.get(container)))) {
+                    container = i;
+                }
+            }
+            if (container != -1) polygons.get(container).holes.add(toLocations(hole, cellSize));
+        }
+        return polygons;
+    }
+
+    /**
+     * Ring of the corners, edges are followed from the starting one, the left turn is preferred
+     *
+     * @return corners as [row0, column0, row1, column1, ...], only the corners, where the direction changes
+     */
+    private static int[] traceRing(Map<Long, Integer> outgoing, Set<Long> visited, long startCorner, int startDirection) {
+        List<Integer> corners = new ArrayList<>();
+        long corner = startCorner;
+        int direction = startDirection;
+        int previousDirection = -1;
+
+        do {
+            visited.add(corner << 2 | direction);
+            if (direction != previousDirection) {
+                corners.add(row(corner));
+                corners.add(column(corner));
+            }
+
+            long next = pack(row(corner) + ROW_STEP[direction], column(corner) + COLUMN_STEP[direction]);
+            int directions = outgoing.get(next);
+            previousDirection = direction;
+            for (int turn : new int[]{1, 0, 3}) {
+                int nextDirection = (direction + turn) % 4;
+                if ((directions & 1 << nextDirection) != 0) {
+                    direction = nextDirection;
+                    break;
+                }
+            }
+            corner = next;
+        } while (corner != startCorner || direction != startDirection);
+
+        // starting corner lies on a straight part, whether the ring ends in the same direction
+        if (previousDirection == startDirection) {
+            corners.remove(0);
+            corners.remove(0);
+        }
+        return corners.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Cell on the right of the first edge of the ring, the edge leads from the first corner
+     */
+    private static int rightCellRow(int[] ring) {
+        int direction = direction(ring);
+        return direction == 0 || direction == 3 ? ring[0] - 1 : ring[0];
+    }
+
+    private static int rightCellColumn(int[] ring) {
+        int direction = direction(ring);
+        return direction == 2 || direction == 3 ? ring[1] - 1 : ring[1];
+    }
+
+    /**
+     * Direction of the first edge of the ring
+     */
+    private static int direction(int[] ring) {
+        if (ring[2] > ring[0]) return 1;
+        if (ring[2] < ring[0]) return 3;
+        return ring[3] > ring[1] ? 0 : 2;
+    }
+
+    /**
+     * Doubled signed area, positive for counter-clockwise rings
+     */
+    private static long area(int[] ring) {
+        long area = 0;
+        for (int i = 0; i < ring.length; i += 2) {
+            int j = (i + 2) % ring.length;
+            area += (long) ring[i + 1] * ring[j] - (long) ring[j + 1] * ring[i];
+        }
+        return area;
+    }
+
+    /**
+     * Ray casting test of the point, cell centers never lie on the ring
+     */
+    private static boolean contains(int[] ring, double row, double column) {
+        boolean inside = false;
+        for (int i = 0; i < ring.length; i += 2) {
+            int j = (i + 2) % ring.length;
+            if ((ring[i] > row) != (ring[j] > row)
+                    && column < ring[i + 1] + (row - ring[i]) * (ring[j + 1] - ring[i + 1]) / (ring[j] - ring[i])) {
+                inside = !inside;
+            }
+        }
+        return inside;
+    }
+
+    private static List<Location> toLocations(int[] ring, double cellSize) {
+        List<Location> locations = new ArrayList<>(ring.length / 2 + 1);
+        for (int i = 0; i < ring.length; i += 2) {
+            locations.add(new Location(ring[i] * cellSize, ring[i + 1] * cellSize));
+        }
+        locations.add(locations.get(0));
+        return locations;
+    }
+
+    private static void addEdge(Map<Long, Integer> outgoing, int row, int column, int direction) {
+        outgoing.merge(pack(row, column), 1 << direction, (a, b) -> a | b);
+    }
+
+    /**
+     * @param row grid row
+     * @param column grid column
+     * @return packed cell or corner
+     */
+    public static long pack(int row, int column) {
+        return (long) row << 32 | (column & 0xFFFFFFFFL);
+    }
+
+    private static int row(long packed) {
+        return (int) (packed >> 32);
+    }
+
+    private static int column(long packed) {
+        return (int) packed;
+    }
+}
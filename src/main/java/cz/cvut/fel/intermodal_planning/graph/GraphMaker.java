@@ -8,8 +8,20 @@ import cz.cvut.fel.intermodal_planning.subplanners.adapters.GMapsPlannerAdapter;
 import cz.cvut.fel.intermodal_planning.subplanners.adapters.OTPlannerAdapter;
 import cz.cvut.fel.intermodal_planning.subplanners.adapters.PlannerAdapter;
 import cz.cvut.fel.intermodal_planning.general.Storage;
+import cz.cvut.fel.intermodal_planning.planner.SnappingCache;
 import cz.cvut.fel.intermodal_planning.graph.enums.GraphExpansionStrategy;
+import cz.cvut.fel.intermodal_planning.graph.model.CSRGraph;
+import cz.cvut.fel.intermodal_planning.graph.model.TravelTimeProfiles;
 import cz.cvut.fel.intermodal_planning.graph.model.GraphEdge;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.ProfileWeights;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.RoutingMetric;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.SearchTreeCache;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.cch.CCHMetric;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.cch.CustomizableContractionHierarchy;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.ch.ContractionHierarchy;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.ch.HubLabels;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.arcflags.ArcFlags;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.heuristic.LandmarkTables;
 import cz.cvut.fel.intermodal_planning.planner.pathfinding.kdtree.KDTree;
 import cz.cvut.fel.intermodal_planning.general.utils.LocationUtils;
 import org.apache.commons.math3.distribution.MultivariateNormalDistribution;
@@ -27,7 +39,18 @@ import java.util.stream.Collectors;
  */
 public class GraphMaker extends GraphBuilder implements GraphExpander {
     private Graph<Node, GraphEdge> graph;
+    private CSRGraph csrGraph;
+    private TravelTimeProfiles travelTimeProfiles;
+    private Map<String, ProfileWeights> profileWeights = new HashMap<>();
+    private SearchTreeCache searchTreeCache;
+    private ContractionHierarchy contractionHierarchy;
+    private LandmarkTables landmarkTables;
+    private ArcFlags arcFlags;
+    private HubLabels hubLabels;
+    private CustomizableContractionHierarchy customizableHierarchy;
+    private Map<RoutingMetric, CCHMetric> customizedMetrics = new HashMap<>();
     private KDTree kdTree;
+    private SnappingCache snappingCache;
 
     private Map<TransportMode, KDTree> ingoingKDTreeMap;
     private Map<TransportMode, KDTree> outgoingKDTreeMap;
@@ -551,6 +574,7 @@ public class GraphMaker extends GraphBuilder implements GraphExpander {
         }
         ingoingKDTreeMap = createIngoingKDTreeMap();
         outgoingKDTreeMap = createOutgoingKDTreeMap();
+        snappingCache = Storage.SNAPPING_CACHE_SIZE > 0 ? new SnappingCache(Storage.SNAPPING_CACHE_SIZE) : null;
 
         logger.info("KDTree created");
     }
@@ -609,6 +633,220 @@ public class GraphMaker extends GraphBuilder implements GraphExpander {
         return map;
     }
 
+    /**
+     * Creation of the immutable CSR snapshot of the current graph used by the pathfinding
+     */
+    public void createCSRGraph() {
+        logger.info("Creating CSR graph...");
+        csrGraph = CSRGraph.fromGraph(graph);
+        travelTimeProfiles = TravelTimeProfiles.create(csrGraph);
+
+        Map<String, ProfileWeights> weights = new HashMap<>();
+        for (RoutingMetric metric : Storage.COST_PROFILES) {
+            weights.put(metric.name, ProfileWeights.create(csrGraph, metric));
+        }
+        profileWeights = weights;
+        searchTreeCache = Storage.SEARCH_TREE_CACHE_SIZE > 0
+                ? new SearchTreeCache(csrGraph, Storage.PRIORITY_QUEUE_TYPE, Storage.SEARCH_TREE_CACHE_SIZE) : null;
+        logger.info("CSR graph created, " + travelTimeProfiles.getProfileCount() + " travel time profiles");
+    }
+
+    /**
+     * CSR snapshot getter
+     *
+     * @return CSR snapshot of the graph
+     */
+    public CSRGraph getCSRGraph() {
+        return csrGraph;
+    }
+
+    /**
+     * Search tree cache getter, the cache is created with the CSR snapshot
+     *
+     * @return SearchTreeCache of the CSR snapshot or null whether it is disabled
+     */
+    public SearchTreeCache getSearchTreeCache() {
+        return searchTreeCache;
+    }
+
+    /**
+     * Travel time profiles getter
+     *
+     * @return time-dependent travel times of the CSR snapshot's edges
+     */
+    public TravelTimeProfiles getTravelTimeProfiles() {
+        return travelTimeProfiles;
+    }
+
+    /**
+     * Cost profile weights getter
+     *
+     * @param profileName name of the profile from Storage.COST_PROFILES
+     * @return ProfileWeights of the CSR snapshot's edges or null whether there is no such profile
+     */
+    public ProfileWeights getProfileWeights(String profileName) {
+        return profileWeights.get(profileName);
+    }
+
+    /**
+     * Contraction hierarchy preprocessing of the current CSR graph
+     */
+    public void createContractionHierarchy() {
+        contractionHierarchy = ContractionHierarchy.build(csrGraph);
+        logger.info("Contraction hierarchy created, " + contractionHierarchy.getShortcutCount() + " shortcuts");
+    }
+
+    /**
+     * Setting of the persisted contraction hierarchy
+     *
+     * @param contractionHierarchy ContractionHierarchy built for the current CSR graph
+     */
+    public void setContractionHierarchy(ContractionHierarchy contractionHierarchy) {
+        this.contractionHierarchy = contractionHierarchy;
+    }
+
+    /**
+     * Contraction hierarchy getter
+     *
+     * @return ContractionHierarchy or null whether it was not created
+     */
+    public ContractionHierarchy getContractionHierarchy() {
+        return contractionHierarchy;
+    }
+
+    /**
+     * Metric-independent preprocessing of the current CSR graph, customizations of the previous one are dropped
+     */
+    public void createCustomizableHierarchy() {
+        setCustomizableHierarchy(CustomizableContractionHierarchy.build(csrGraph));
+    }
+
+    /**
+     * Setting of the persisted customizable contraction hierarchy, it is customized for all Storage.COST_PROFILES
+     *
+     * @param customizableHierarchy CustomizableContractionHierarchy built for the current CSR graph
+     */
+    public void setCustomizableHierarchy(CustomizableContractionHierarchy customizableHierarchy) {
+        Map<RoutingMetric, CCHMetric> metrics = new HashMap<>();
+        if (customizableHierarchy != null && customizableHierarchy.isBuiltFor(csrGraph)) {
+            for (RoutingMetric metric : Storage.COST_PROFILES) {
+                logger.info("Customizing hierarchy for metric " + metric.name);
+                metrics.put(metric, customizableHierarchy.customize(csrGraph, metric));
+            }
+        }
+
+        this.customizableHierarchy = customizableHierarchy;
+        customizedMetrics = metrics;
+    }
+
+    /**
+     * Customizable contraction hierarchy getter
+     *
+     * @return CustomizableContractionHierarchy or null whether it was not created
+     */
+    public CustomizableContractionHierarchy getCustomizableHierarchy() {
+        return customizableHierarchy;
+    }
+
+    /**
+     * Customization of the hierarchy for the metric, only the cost profiles are customized, when the hierarchy is set.
+     * Metrics are matched by their weights, so a metric of a profile name with different weights is not customized.
+     *
+     * @param metric RoutingMetric
+     * @return CCHMetric or null whether the customizable hierarchy was not created for the current graph
+     * or the metric is not one of Storage.COST_PROFILES
+     */
+    public CCHMetric getCustomizedMetric(RoutingMetric metric) {
+        if (customizableHierarchy == null || !customizableHierarchy.isBuiltFor(csrGraph)) return null;
+
+        return customizedMetrics.get(metric);
+    }
+
+    /**
+     * Hub labels computation from the current contraction hierarchy
+     */
+    public void createHubLabels() {
+        hubLabels = HubLabels.create(contractionHierarchy);
+    }
+
+    /**
+     * Setting of the persisted hub labels
+     *
+     * @param hubLabels HubLabels computed for the current CSR graph
+     */
+    public void setHubLabels(HubLabels hubLabels) {
+        this.hubLabels = hubLabels;
+    }
+
+    /**
+     * Hub labels getter
+     *
+     * @return HubLabels or null whether they were not created
+     */
+    public HubLabels getHubLabels() {
+        return hubLabels;
+    }
+
+    /**
+     * Landmark tables computation for the current CSR graph.
+     * Landmarks of the previous tables are kept, they are found again by their location as the graph is rebuilt.
+     */
+    public void createLandmarkTables() {
+        Set<Integer> keptLandmarks = new LinkedHashSet<>();
+        if (landmarkTables != null) {
+            for (int i = 0; i < landmarkTables.getLandmarkCount(); i++) {
+                Object[] nodeIdArr = kdTree.nearest(landmarkTables.getLandmarkLocation(i).toDoubleArray(), 1);
+                if (nodeIdArr.length > 0) keptLandmarks.add((int) nodeIdArr[0]);
+            }
+        }
+
+        landmarkTables = LandmarkTables.create(csrGraph, Storage.LANDMARK_COUNT, Storage.LANDMARK_SELECTION_STRATEGY,
+                keptLandmarks.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    /**
+     * Setting of the persisted landmark tables
+     *
+     * @param landmarkTables LandmarkTables computed for the current CSR graph
+     */
+    public void setLandmarkTables(LandmarkTables landmarkTables) {
+        this.landmarkTables = landmarkTables;
+    }
+
+    /**
+     * Landmark tables getter
+     *
+     * @return LandmarkTables or null whether they were not created
+     */
+    public LandmarkTables getLandmarkTables() {
+        return landmarkTables;
+    }
+
+    /**
+     * Arc flags computation for the current CSR graph
+     */
+    public void createArcFlags() {
+        arcFlags = ArcFlags.create(csrGraph, Storage.AREA_PRAGUE, Storage.ARC_FLAGS_GRID_SIZE);
+    }
+
+    /**
+     * Setting of the persisted arc flags
+     *
+     * @param arcFlags ArcFlags computed for the current CSR graph
+     */
+    public void setArcFlags(ArcFlags arcFlags) {
+        this.arcFlags = arcFlags;
+    }
+
+    /**
+     * Arc flags getter
+     *
+     * @return ArcFlags or null whether they were not created
+     */
+    public ArcFlags getArcFlags() {
+        return arcFlags;
+    }
+
     /**
      * General KD Tree getter
      *
@@ -618,6 +856,15 @@ public class GraphMaker extends GraphBuilder implements GraphExpander {
         return kdTree;
     }
 
+    /**
+     * Snapping cache getter, the cache is created with the KD trees
+     *
+     * @return SnappingCache of the current KD trees or null whether it is disabled
+     */
+    public SnappingCache getSnappingCache() {
+        return snappingCache;
+    }
+
     /**
      * return KD tree for given transport ingoing/outgoing transport mode
      * @param mode transport mode
@@ -0,0 +1,307 @@
+package cz.cvut.fel.intermodal_planning.graph.model;
+
+import com.umotional.basestructures.Graph;
+import com.umotional.basestructures.Node;
+import cz.cvut.fel.intermodal_planning.general.utils.LocationUtils;
+import cz.cvut.fel.intermodal_planning.planner.model.Location;
+import cz.cvut.fel.intermodal_planning.planner.model.TransportMode;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Immutable compressed sparse row (CSR) snapshot of the planner's Graph.
+ * <p>
+ * Outgoing edges of node {@code n} occupy the index range {@code [getOutBegin(n), getOutEnd(n))},
+ * edge attributes are stored in parallel primitive arrays indexed by that edge index,
+ * so the pathfinding does not have to dereference any Node or GraphEdge object.
+ * Reverse adjacency {@code [getInBegin(n), getInEnd(n))} holds indices of the incoming edges for backward searches.
+ */
+public final class CSRGraph {
+    /**
+     * Number of transport modes, edge modes are stored as their ordinal
+     */
+    public static final int MODE_COUNT = TransportMode.values().length;
+
+    /**
+     * Transport modes by their ordinal, TransportMode.values() clones the array on every call
+     */
+    public static final TransportMode[] MODES = TransportMode.values();
+
+    private final int nodeCount;
+    private final int edgeCount;
+
+    private final int[] outOffset;
+    private final int[] edgeSource;
+    private final int[] edgeTarget;
+    private final int[] edgeDuration;
+    private final byte[] edgeMode;
+
+    private final int[] inOffset;
+    private final int[] inEdge;
+
+    private final double[] latitude;
+    private final double[] longitude;
+
+    private final GraphEdge[] graphEdges;
+
+    private double maxEdgeSpeed;
+    private boolean hasZeroDurationEdges;
+    private long fingerprint;
+
+    private CSRGraph(int nodeCount, int edgeCount) {
+        this.nodeCount = nodeCount;
+        this.edgeCount = edgeCount;
+
+        outOffset = new int[nodeCount + 1];
+        edgeSource = new int[edgeCount];
+        edgeTarget = new int[edgeCount];
+        edgeDuration = new int[edgeCount];
+        edgeMode = new byte[edgeCount];
+        inOffset = new int[nodeCount + 1];
+        inEdge = new int[edgeCount];
+        latitude = new double[nodeCount];
+        longitude = new double[nodeCount];
+        graphEdges = new GraphEdge[edgeCount];
+    }
+
+    /**
+     * Creation of CSR snapshot from Graph
+     *
+     * @param graph Graph object
+     * @return CSR snapshot of the graph
+     */
+    public static CSRGraph fromGraph(Graph<Node, GraphEdge> graph) {
+        Collection<Node> nodes = graph.getAllNodes();
+        Collection<GraphEdge> edges = graph.getAllEdges();
+
+        int maxNodeId = -1;
+        for (Node node : nodes) {
+            maxNodeId = Math.max(maxNodeId, node.id);
+        }
+
+        CSRGraph csrGraph = new CSRGraph(maxNodeId + 1, edges.size());
+
+        for (Node node : nodes) {
+            csrGraph.latitude[node.id] = node.getLatitude();
+            csrGraph.longitude[node.id] = node.getLongitude();
+        }
+
+        // counting sort of edges by their source node
+        for (GraphEdge edge : edges) {
+            csrGraph.outOffset[edge.fromId + 1]++;
+        }
+        for (int i = 0; i < csrGraph.nodeCount; i++) {
+            csrGraph.outOffset[i + 1] += csrGraph.outOffset[i];
+        }
+
+        int[] position = new int[csrGraph.nodeCount];
+        System.arraycopy(csrGraph.outOffset, 0, position, 0, csrGraph.nodeCount);
+
+        for (GraphEdge edge : edges) {
+            int idx = position[edge.fromId]++;
+            csrGraph.edgeSource[idx] = edge.fromId;
+            csrGraph.edgeTarget[idx] = edge.toId;
+            csrGraph.edgeDuration[idx] = (int) Math.min(edge.durationInSeconds, Integer.MAX_VALUE);
+            csrGraph.edgeMode[idx] = (byte) edge.transportMode.ordinal();
+            csrGraph.graphEdges[idx] = edge;
+        }
+
+        for (int e = 0; e < csrGraph.edgeCount; e++) {
+            csrGraph.inOffset[csrGraph.edgeTarget[e] + 1]++;
+        }
+        for (int i = 0; i < csrGraph.nodeCount; i++) {
+            csrGraph.inOffset[i + 1] += csrGraph.inOffset[i];
+        }
+        System.arraycopy(csrGraph.inOffset, 0, position, 0, csrGraph.nodeCount);
+        for (int e = 0; e < csrGraph.edgeCount; e++) {
+            csrGraph.inEdge[position[csrGraph.edgeTarget[e]]++] = e;
+        }
+
+        long fingerprint = 31L * csrGraph.nodeCount + csrGraph.edgeCount;
+        for (int e = 0; e < csrGraph.edgeCount; e++) {
+            csrGraph.maxEdgeSpeed = Math.max(csrGraph.maxEdgeSpeed, csrGraph.getEdgeLength(e) / Math.max(csrGraph.edgeDuration[e], 1));
+            if (csrGraph.edgeDuration[e] == 0 && csrGraph.getEdgeLength(e) > 0) csrGraph.hasZeroDurationEdges = true;
+
+            fingerprint = 31L * fingerprint + csrGraph.edgeSource[e];
+            fingerprint = 31L * fingerprint + csrGraph.edgeTarget[e];
+            fingerprint = 31L * fingerprint + csrGraph.edgeDuration[e];
+            fingerprint = 31L * fingerprint + csrGraph.edgeMode[e];
+        }
+        csrGraph.fingerprint = fingerprint;
+
+        return csrGraph;
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    public int getEdgeCount() {
+        return edgeCount;
+    }
+
+    /**
+     * @param nodeId Node id
+     * @return index of the first outgoing edge of the node
+     */
+    public int getOutBegin(int nodeId) {
+        return outOffset[nodeId];
+    }
+
+    /**
+     * @param nodeId Node id
+     * @return index after the last outgoing edge of the node
+     */
+    public int getOutEnd(int nodeId) {
+        return outOffset[nodeId + 1];
+    }
+
+    /**
+     * @param nodeId Node id
+     * @return position of the first incoming edge of the node in the reverse adjacency
+     */
+    public int getInBegin(int nodeId) {
+        return inOffset[nodeId];
+    }
+
+    /**
+     * @param nodeId Node id
+     * @return position after the last incoming edge of the node in the reverse adjacency
+     */
+    public int getInEnd(int nodeId) {
+        return inOffset[nodeId + 1];
+    }
+
+    /**
+     * @param position Position in the reverse adjacency
+     * @return index of the incoming edge
+     */
+    public int getInEdge(int position) {
+        return inEdge[position];
+    }
+
+    public int getEdgeSource(int edgeIdx) {
+        return edgeSource[edgeIdx];
+    }
+
+    public int getEdgeTarget(int edgeIdx) {
+        return edgeTarget[edgeIdx];
+    }
+
+    public int getEdgeDuration(int edgeIdx) {
+        return edgeDuration[edgeIdx];
+    }
+
+    /**
+     * @param edgeIdx Edge index
+     * @return ordinal of edge's TransportMode
+     */
+    public int getEdgeMode(int edgeIdx) {
+        return edgeMode[edgeIdx];
+    }
+
+    public TransportMode getEdgeTransportMode(int edgeIdx) {
+        return MODES[edgeMode[edgeIdx]];
+    }
+
+    /**
+     * Beeline length of the edge
+     *
+     * @param edgeIdx Edge index
+     * @return distance between edge's nodes in meters
+     */
+    public double getEdgeLength(int edgeIdx) {
+        int from = edgeSource[edgeIdx];
+        int to = edgeTarget[edgeIdx];
+        return LocationUtils.distance(latitude[from], latitude[to], longitude[from], longitude[to]);
+    }
+
+    /**
+     * Maximal beeline speed over all edges, edges shorter than one second are considered to take one second
+     *
+     * @return speed in meters per second
+     */
+    public double getMaxEdgeSpeed() {
+        return maxEdgeSpeed;
+    }
+
+    /**
+     * Whether the graph contains an edge of zero duration between two distinct locations,
+     * no beeline speed bound is consistent over such edge
+     *
+     * @return whether there is such edge
+     */
+    public boolean hasZeroDurationEdges() {
+        return hasZeroDurationEdges;
+    }
+
+    /**
+     * Hash of the graph's topology, durations and modes used for validation of persisted preprocessing data
+     *
+     * @return graph fingerprint
+     */
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    public double getLatitude(int nodeId) {
+        return latitude[nodeId];
+    }
+
+    public double getLongitude(int nodeId) {
+        return longitude[nodeId];
+    }
+
+    /**
+     * Beeline distance of the node to the location
+     *
+     * @param nodeId Node id
+     * @param location Location
+     * @return distance in meters
+     */
+    public double distance(int nodeId, Location location) {
+        return LocationUtils.distance(latitude[nodeId], location.lat, longitude[nodeId], location.lon);
+    }
+
+    /**
+     * Original Graph's edge, should be used only for building the result, not in the search itself
+     *
+     * @param edgeIdx Edge index
+     * @return GraphEdge object
+     */
+    public GraphEdge getGraphEdge(int edgeIdx) {
+        return graphEdges[edgeIdx];
+    }
+
+    /**
+     * Mapping of the edge path to the original Graph's edges
+     *
+     * @param edgePath edge indices
+     * @return List of GraphEdge objects or null whether the path is null
+     */
+    public List<GraphEdge> getGraphEdges(int[] edgePath) {
+        if (edgePath == null) return null;
+
+        List<GraphEdge> edges = new ArrayList<>(edgePath.length);
+        for (int edgeIdx : edgePath) {
+            edges.add(graphEdges[edgeIdx]);
+        }
+        return edges;
+    }
+
+    /**
+     * Edge index lookup
+     *
+     * @param fromId source Node id
+     * @param toId target Node id
+     * @return edge index or -1 if there is no such edge
+     */
+    public int findEdge(int fromId, int toId) {
+        for (int e = outOffset[fromId]; e < outOffset[fromId + 1]; e++) {
+            if (edgeTarget[e] == toId) return e;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,152 @@
+package cz.cvut.fel.intermodal_planning.graph.model;
+
+import cz.cvut.fel.intermodal_planning.general.Storage;
+import cz.cvut.fel.intermodal_planning.planner.model.TransportMode;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Time-dependent travel times of the CSRGraph edges.
+ * <p>
+ * Travel time of an edge is a periodic piecewise-linear function of the departure time (seconds since midnight).
+ * Interpolation points of all profiles are stored in one shared pool, edges with equal profile share
+ * the same profile, edges without profile keep their static duration.
+ * Profiles satisfy the FIFO property and never go below the static duration, so the static lower bounds
+ * (heuristics, landmarks) stay admissible.
+ */
+public final class TravelTimeProfiles {
+    /**
+     * Period of the profiles in seconds
+     */
+    public static final int PERIOD = 24 * 3600;
+
+    private static final int STATIC = -1;
+
+    private final CSRGraph graph;
+
+    private final int[] edgeProfile;
+    private final int[] profileOffset;
+    private final int[] pointTime;
+    private final int[] pointDuration;
+
+    private TravelTimeProfiles(CSRGraph graph, int[] edgeProfile, int[] profileOffset, int[] pointTime, int[] pointDuration) {
+        this.graph = graph;
+        this.edgeProfile = edgeProfile;
+        this.profileOffset = profileOffset;
+        this.pointTime = pointTime;
+        this.pointDuration = pointDuration;
+    }
+
+    /**
+     * Creation of the profiles, car edges follow the congestion profile in Storage
+     *
+     * @param graph CSR graph
+     * @return TravelTimeProfiles of the graph's edges
+     */
+    public static TravelTimeProfiles create(CSRGraph graph) {
+        int[] times = Storage.CAR_CONGESTION_PROFILE_TIMES;
+        double[] factors = Storage.CAR_CONGESTION_PROFILE_FACTORS;
+
+        int[] edgeProfile = new int[graph.getEdgeCount()];
+        Map<Integer, Integer> durationProfiles = new HashMap<>();
+        int[] profileOffset = new int[16];
+        int[] pointTime = new int[16 * times.length];
+        int[] pointDuration = new int[16 * times.length];
+        int profileCount = 0;
+
+        for (int e = 0; e < graph.getEdgeCount(); e++) {
+            int duration = graph.getEdgeDuration(e);
+            if (graph.getEdgeMode(e) != TransportMode.CAR.ordinal() || duration == 0) {
+                edgeProfile[e] = STATIC;
+                continue;
+            }
+
+            Integer profile = durationProfiles.get(duration);
+            if (profile == null) {
+                if (profileCount + 2 > profileOffset.length) {
+                    profileOffset = Arrays.copyOf(profileOffset, profileOffset.length * 2);
+                    pointTime = Arrays.copyOf(pointTime, pointTime.length * 2);
+                    pointDuration = Arrays.copyOf(pointDuration, pointDuration.length * 2);
+                }
+
+                int begin = profileCount * times.length;
+                for (int i = 0; i < times.length; i++) {
+                    pointTime[begin + i] = times[i];
+                    pointDuration[begin + i] = (int) Math.round(duration * Math.max(factors[i], 1));
+                }
+                enforceFIFO(pointTime, pointDuration, begin, begin + times.length);
+
+                profile = profileCount++;
+                profileOffset[profileCount] = begin + times.length;
+                durationProfiles.put(duration, profile);
+            }
+            edgeProfile[e] = profile;
+        }
+
+        int pointCount = profileOffset[profileCount];
+        return new TravelTimeProfiles(graph, edgeProfile, Arrays.copyOf(profileOffset, profileCount + 1),
+                Arrays.copyOf(pointTime, pointCount), Arrays.copyOf(pointDuration, pointCount));
+    }
+
+    /**
+     * Travel time of the edge
+     *
+     * @param edgeIdx Edge index
+     * @param departureTime departure time from the edge's source in seconds since midnight, can exceed one day
+     * @return duration in seconds
+     */
+    public int getDuration(int edgeIdx, long departureTime) {
+        int profile = edgeProfile[edgeIdx];
+        if (profile == STATIC) return graph.getEdgeDuration(edgeIdx);
+
+        int begin = profileOffset[profile];
+        int end = profileOffset[profile + 1];
+        int time = (int) Math.floorMod(departureTime, (long) PERIOD);
+
+        // last point not after the time, begin - 1 whether there is none
+        int lo = begin, hi = end - 1, idx = begin - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (pointTime[mid] <= time) {
+                idx = mid;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+
+        int prev = idx < begin ? end - 1 : idx;
+        long prevTime = idx < begin ? pointTime[end - 1] - PERIOD : pointTime[idx];
+        int next = idx + 1 < end ? idx + 1 : begin;
+        long nextTime = idx + 1 < end ? pointTime[idx + 1] : pointTime[begin] + PERIOD;
+
+        if (nextTime == prevTime) return pointDuration[prev];
+        return (int) (pointDuration[prev] + (pointDuration[next] - pointDuration[prev]) * (time - prevTime) / (nextTime - prevTime));
+    }
+
+    /**
+     * Number of distinct profiles
+     *
+     * @return profile count
+     */
+    public int getProfileCount() {
+        return profileOffset.length - 1;
+    }
+
+    /**
+     * Travel time can not decrease faster than the time passes, otherwise waiting would pay off.
+     * Durations are only raised, so they stay above the static duration.
+     */
+    private static void enforceFIFO(int[] pointTime, int[] pointDuration, int begin, int end) {
+        // second pass propagates the wrap-around segment
+        for (int pass = 0; pass < 2; pass++) {
+            for (int i = begin; i < end; i++) {
+                int prev = i == begin ? end - 1 : i - 1;
+                int gap = i == begin ? pointTime[i] + PERIOD - pointTime[prev] : pointTime[i] - pointTime[prev];
+                pointDuration[i] = Math.max(pointDuration[i], pointDuration[prev] - gap);
+            }
+        }
+    }
+}
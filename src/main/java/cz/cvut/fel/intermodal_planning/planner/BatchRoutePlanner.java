@@ -0,0 +1,120 @@
+package cz.cvut.fel.intermodal_planning.planner;
+
+import cz.cvut.fel.intermodal_planning.general.Storage;
+import cz.cvut.fel.intermodal_planning.planner.model.Location;
+import cz.cvut.fel.intermodal_planning.planner.model.Route;
+import cz.cvut.fel.intermodal_planning.planner.model.TransportMode;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+
+/**
+ * Batch route metasearch over a bounded pool of worker threads.
+ * <p>
+ * Workers share the immutable CSR graph and the preprocessing of the RoutePlanner, every worker thread
+ * keeps its own SearchWorkspace, so the queries do not allocate the search structures.
+ * Results are delivered on the calling thread, so the consumers do not have to be thread-safe.
+ */
+public class BatchRoutePlanner {
+    private static final Logger logger = LogManager.getLogger(BatchRoutePlanner.class);
+
+    private final RoutePlanner routePlanner;
+    private final ForkJoinPool pool;
+
+    public BatchRoutePlanner(RoutePlanner routePlanner) {
+        this(routePlanner, Storage.BATCH_PARALLELISM);
+    }
+
+    public BatchRoutePlanner(RoutePlanner routePlanner, int parallelism) {
+        this.routePlanner = routePlanner;
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * Route metasearch of all OD pairs, results are in the order of the OD pairs
+     *
+     * @param odPairs OD pairs, origin at index 0 and destination at index 1
+     * @param availableModes Allowed Transport Modes to use, all modes whether empty
+     * @return List of metasearched Routes
+     */
+    public List<Route> metasearchRoutes(List<Location[]> odPairs, TransportMode... availableModes) {
+        List<Future<Route>> futures = new ArrayList<>(odPairs.size());
+        for (Location[] odPair : odPairs) {
+            futures.add(pool.submit(createTask(odPair, availableModes)));
+        }
+
+        List<Route> routes = new ArrayList<>(odPairs.size());
+        for (Future<Route> future : futures) {
+            routes.add(getResult(future));
+        }
+        return routes;
+    }
+
+    /**
+     * Route metasearch of all OD pairs, results are delivered as soon as they are found
+     *
+     * @param odPairs OD pairs, origin at index 0 and destination at index 1
+     * @param consumer consumer of the OD pair index and its metasearched Route
+     * @param availableModes Allowed Transport Modes to use, all modes whether empty
+     */
+    public void metasearchRoutes(List<Location[]> odPairs, BiConsumer<Integer, Route> consumer, TransportMode... availableModes) {
+        CompletionService<IndexedRoute> completionService = new ExecutorCompletionService<>(pool);
+        for (int i = 0; i < odPairs.size(); i++) {
+            final int idx = i;
+            final Callable<Route> task = createTask(odPairs.get(i), availableModes);
+            completionService.submit(() -> new IndexedRoute(idx, task.call()));
+        }
+
+        for (int i = 0; i < odPairs.size(); i++) {
+            try {
+                IndexedRoute result = getResult(completionService.take());
+                consumer.accept(result.idx, result.route);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Batch metasearch was interrupted", e);
+            }
+        }
+    }
+
+    /**
+     * Stopping the worker threads, the planner can not be used afterwards
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    private Callable<Route> createTask(Location[] odPair, TransportMode[] availableModes) {
+        return () -> routePlanner.metasearchRoute(odPair[0], odPair[1], availableModes);
+    }
+
+    private static <T> T getResult(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Batch metasearch was interrupted", e);
+        } catch (ExecutionException e) {
+            logger.error("Batch metasearch failed", e.getCause());
+            throw new IllegalStateException("Batch metasearch failed", e.getCause());
+        }
+    }
+
+    private static class IndexedRoute {
+        private final int idx;
+        private final Route route;
+
+        private IndexedRoute(int idx, Route route) {
+            this.idx = idx;
+            this.route = route;
+        }
+    }
+}
@@ -5,9 +5,17 @@ import com.umotional.basestructures.Node;
 import cz.cvut.fel.intermodal_planning.general.Storage;
 import cz.cvut.fel.intermodal_planning.graph.GraphMaker;
 import cz.cvut.fel.intermodal_planning.graph.enums.GraphExpansionStrategy;
+import cz.cvut.fel.intermodal_planning.graph.model.CSRGraph;
 import cz.cvut.fel.intermodal_planning.graph.model.GraphEdge;
 import cz.cvut.fel.intermodal_planning.planner.model.LocationArea;
 import cz.cvut.fel.intermodal_planning.planner.model.Route;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.cch.CustomizableContractionHierarchy;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.ch.ContractionHierarchy;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.ch.HubLabels;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.enums.HeuristicType;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.enums.SearchEngineType;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.arcflags.ArcFlags;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.heuristic.LandmarkTables;
 import cz.cvut.fel.intermodal_planning.general.utils.SerializationUtils;
 import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
@@ -17,6 +25,9 @@ import java.net.URISyntaxException;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.BiPredicate;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * Created by Ondrej Prenek on 27/10/2017
@@ -80,6 +91,8 @@ public class PlannerInitializer {
         }
 
         graphMaker.createKDTree();
+        graphMaker.createCSRGraph();
+        initPreprocessing(null);
         routePlanner = new RoutePlanner(graphMaker);
 
         return routePlanner;
@@ -102,6 +115,8 @@ public class PlannerInitializer {
                 graphMaker.setGraph(graph);
             }
             graphMaker.createKDTree();
+            graphMaker.createCSRGraph();
+            initPreprocessing(graphFile.getParentFile());
             routePlanner = new RoutePlanner(graphMaker);
 
         } catch (URISyntaxException e) {
@@ -109,5 +124,65 @@ public class PlannerInitializer {
         }
     }
 
+    /**
+     * Preprocessing selected in Storage, persisted preprocessing is loaded whether it matches the graph
+     *
+     * @param directory directory of the persisted preprocessing, null whether it is only created
+     */
+    private void initPreprocessing(File directory) {
+        if (Storage.SEARCH_ENGINE == SearchEngineType.CONTRACTION_HIERARCHIES || Storage.USE_HUB_LABELS) {
+            initPreprocessing("Contraction hierarchy", directory, Storage.CONTRACTION_HIERARCHY_FILE, ContractionHierarchy::isBuiltFor,
+                    graphMaker::setContractionHierarchy, graphMaker::createContractionHierarchy, graphMaker::getContractionHierarchy);
+        }
+        if (Storage.USE_HUB_LABELS) {
+            initPreprocessing("Hub labels", directory, Storage.HUB_LABELS_FILE, HubLabels::isBuiltFor,
+                    graphMaker::setHubLabels, graphMaker::createHubLabels, graphMaker::getHubLabels);
+        }
+        if (Storage.HEURISTIC_TYPE == HeuristicType.LANDMARKS) {
+            initPreprocessing("Landmark tables", directory, Storage.LANDMARK_TABLES_FILE, LandmarkTables::isBuiltFor,
+                    graphMaker::setLandmarkTables, graphMaker::createLandmarkTables, graphMaker::getLandmarkTables);
+        }
+        if (Storage.USE_ARC_FLAGS) {
+            initPreprocessing("Arc flags", directory, Storage.ARC_FLAGS_FILE, ArcFlags::isBuiltFor,
+                    graphMaker::setArcFlags, graphMaker::createArcFlags, graphMaker::getArcFlags);
+        }
+        if (Storage.USE_CUSTOMIZABLE_CH) {
+            initPreprocessing("Customizable contraction hierarchy", directory, Storage.CUSTOMIZABLE_CH_FILE,
+                    CustomizableContractionHierarchy::isBuiltFor, graphMaker::setCustomizableHierarchy,
+                    graphMaker::createCustomizableHierarchy, graphMaker::getCustomizableHierarchy);
+        }
+    }
+
+    /**
+     * Loading of the persisted preprocessing, it is created again and written whether it does not match the graph
+     *
+     * @param name name of the preprocessing for the log
+     * @param directory directory of the persisted preprocessing, null whether it is only created
+     * @param fileName name of the file with the serialized preprocessing
+     * @param isBuiltFor check whether the preprocessing matches the graph
+     * @param loader setter of the loaded preprocessing
+     * @param builder creation of the preprocessing
+     * @param getter getter of the created preprocessing
+     */
+    @SuppressWarnings("unchecked")
+    private <T> void initPreprocessing(String name, File directory, String fileName, BiPredicate<T, CSRGraph> isBuiltFor,
+                                       Consumer<T> loader, Runnable builder, Supplier<T> getter) {
+        if (directory == null) {
+            builder.run();
+            return;
+        }
+
+        File file = new File(directory, fileName);
+        T preprocessing = file.exists() ? (T) SerializationUtils.readObjectFromFile(file) : null;
+
+        if (preprocessing != null && isBuiltFor.test(preprocessing, graphMaker.getCSRGraph())) {
+            logger.info(name + " is serialized successfully");
+            loader.accept(preprocessing);
+        } else {
+            logger.info(name + " does not match the graph");
+            builder.run();
+            SerializationUtils.writeObjectToFile(getter.get(), file);
+        }
+    }
 
 }
@@ -0,0 +1,69 @@
+package cz.cvut.fel.intermodal_planning.planner;
+
+import cz.cvut.fel.intermodal_planning.planner.model.SearchStatistics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Registry of planner counters accumulated over all queries since the start of the server.
+ * <p>
+ * Counters are named "group.counter", search statistics are grouped by the name of the search engine,
+ * so the engines can be compared by the totals divided by their query count.
+ */
+public class PlannerMetrics {
+    private static PlannerMetrics instance;
+
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+
+    private PlannerMetrics() {
+    }
+
+    public static synchronized PlannerMetrics getInstance() {
+        if (instance == null) instance = new PlannerMetrics();
+        return instance;
+    }
+
+    /**
+     * Adding the value to the counter, the counter is created whether it does not exist
+     *
+     * @param name counter name
+     * @param value added value
+     */
+    public void increment(String name, long value) {
+        counters.computeIfAbsent(name, key -> new LongAdder()).add(value);
+    }
+
+    /**
+     * Recording statistics of one query
+     *
+     * @param engine name of the search engine
+     * @param statistics SearchStatistics of the query
+     */
+    public void record(String engine, SearchStatistics statistics) {
+        increment(engine + ".queries", 1);
+        increment(engine + ".settledStates", statistics.settledStates);
+        increment(engine + ".relaxedEdges", statistics.relaxedEdges);
+        increment(engine + ".queuePushes", statistics.queuePushes);
+        increment(engine + ".decreaseKeys", statistics.decreaseKeys);
+        increment(engine + ".candidates", statistics.originCandidates + statistics.destinationCandidates);
+        increment(engine + ".snapNanos", statistics.snapNanos);
+        increment(engine + ".searchNanos", statistics.searchNanos);
+        increment(engine + ".reconstructNanos", statistics.reconstructNanos);
+    }
+
+    /**
+     * @return current values of all counters ordered by name
+     */
+    public Map<String, Long> getSnapshot() {
+        Map<String, Long> snapshot = new TreeMap<>();
+        counters.forEach((name, counter) -> snapshot.put(name, counter.sum()));
+        return snapshot;
+    }
+
+    public void reset() {
+        counters.clear();
+    }
+}
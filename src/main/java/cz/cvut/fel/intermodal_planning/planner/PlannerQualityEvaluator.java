@@ -1,13 +1,25 @@
 package cz.cvut.fel.intermodal_planning.planner;
 
+import com.umotional.basestructures.Node;
 import cz.cvut.fel.intermodal_planning.general.Storage;
+import cz.cvut.fel.intermodal_planning.graph.GraphMaker;
 import cz.cvut.fel.intermodal_planning.graph.enums.GraphExpansionStrategy;
 import cz.cvut.fel.intermodal_planning.graph.enums.GraphQualityMetric;
+import cz.cvut.fel.intermodal_planning.graph.model.CSRGraph;
 import cz.cvut.fel.intermodal_planning.planner.model.Location;
 import cz.cvut.fel.intermodal_planning.planner.model.LocationArea;
 import cz.cvut.fel.intermodal_planning.planner.model.Route;
 import cz.cvut.fel.intermodal_planning.planner.model.TransportMode;
 import cz.cvut.fel.intermodal_planning.general.utils.GeoJSONBuilder;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.ModeStates;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.PathfindingAlgorithm;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.RoutingMetric;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.ShortestPathAlgorithm;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.arcflags.ArcFlags;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.cch.CCHMetric;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.cch.CCHQueryEngine;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.ch.CHQueryEngine;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.ch.HubLabels;
 import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
 
@@ -15,6 +27,7 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.List;
 
 /**
  * Created by Ondrej Prenek on 27/10/2017
@@ -165,4 +178,102 @@ public class PlannerQualityEvaluator {
         System.out.println(GeoJSONBuilder.getInstance().buildGeoJSONStringForRoute(route));
         System.out.println(GeoJSONBuilder.getInstance().buildGeoJSONStringForRoute(refoundedRoute));
     }
+
+    /**
+     * Check of the search engines against plain Dijkstra's algorithm without the upper bound pruning.
+     * Durations of the pruned unidirectional search, arc flags, contraction hierarchy, customizable hierarchy
+     * and hub labels are compared for random location pairs, the engines, which were not created, are skipped.
+     * Number of mismatches and settled states of the pruned and unpruned search are written to the statistics.
+     *
+     * @param plannerInitializer PlannerInitializer Instance
+     */
+    public static void evaluateSearchEngines(PlannerInitializer plannerInitializer) {
+        RoutePlanner routePlanner = plannerInitializer.routePlanner;
+        GraphMaker graphMaker = plannerInitializer.graphMaker;
+        CSRGraph graph = graphMaker.getCSRGraph();
+        TransportMode[] modes = TransportMode.availableModes();
+        int findingPathCount = Storage.FINDING_PATH_COUNT;
+
+        CCHMetric cchMetric = graphMaker.getCustomizedMetric(new RoutingMetric(Storage.DEFAULT_COST_PROFILE));
+        HubLabels hubLabels = graphMaker.getHubLabels();
+
+        int mismatchCount = 0;
+        long unprunedSettledCount = 0;
+        long prunedSettledCount = 0;
+
+        for (int i = 0; i < findingPathCount; i++) {
+            Location[] locArray = plannerInitializer.locationArea.generateRandomLocations(2);
+            List<Node> originList = routePlanner.getNearestNodes(locArray[0], 5);
+            List<Node> destinationList = routePlanner.getNearestNodes(locArray[1], 5);
+
+            ShortestPathAlgorithm<Node> dijkstra = new ShortestPathAlgorithm<>(graph);
+            dijkstra.setPruning(false);
+            long expected = getPathDuration(graph, dijkstra, locArray, originList, destinationList, modes);
+            unprunedSettledCount += dijkstra.getSettledNodeCount();
+
+            ShortestPathAlgorithm<Node> pruned = new ShortestPathAlgorithm<>(graph);
+            long duration = getPathDuration(graph, pruned, locArray, originList, destinationList, modes);
+            prunedSettledCount += pruned.getSettledNodeCount();
+            if (duration != expected) mismatchCount += logMismatch("ShortestPathAlgorithm", duration, expected);
+
+            if (graphMaker.getArcFlags() != null && ArcFlags.supports(modes)) {
+                ShortestPathAlgorithm<Node> algorithm = new ShortestPathAlgorithm<>(graph);
+                algorithm.setArcFlags(graphMaker.getArcFlags());
+                duration = getPathDuration(graph, algorithm, locArray, originList, destinationList, modes);
+                if (duration != expected) mismatchCount += logMismatch("ArcFlags", duration, expected);
+            }
+            if (graphMaker.getContractionHierarchy() != null) {
+                CHQueryEngine<Node> algorithm = new CHQueryEngine<>(graphMaker.getContractionHierarchy(), graph);
+                duration = getPathDuration(graph, algorithm, locArray, originList, destinationList, modes);
+                if (duration != expected) mismatchCount += logMismatch("CHQueryEngine", duration, expected);
+            }
+            if (cchMetric != null) {
+                CCHQueryEngine<Node> algorithm = new CCHQueryEngine<>(cchMetric, graph);
+                duration = getPathDuration(graph, algorithm, locArray, originList, destinationList, modes);
+                if (duration != expected) mismatchCount += logMismatch("CCHQueryEngine", duration, expected);
+            }
+            if (hubLabels != null) {
+                duration = hubLabels.queryDuration(graph, locArray[0], locArray[1], originList, destinationList);
+                if (duration != expected) mismatchCount += logMismatch("HubLabels", duration, expected);
+            }
+        }
+
+        File file = new File(Storage.STATISTICS_PATH + "/planner_search_engines.txt");
+        try {
+            FileWriter writer = new FileWriter(file, true);
+            writer.write(findingPathCount + " queries," +
+                    "mismatches: " + mismatchCount + "," +
+                    "settled states unpruned: " + unprunedSettledCount + "," +
+                    "settled states pruned: " + prunedSettledCount + "\n");
+            writer.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Duration of the path found by the algorithm with the default weights, access and egress included
+     *
+     * @return duration in seconds, -1 whether there is no path
+     */
+    private static long getPathDuration(CSRGraph graph, PathfindingAlgorithm<Node> algorithm, Location[] locArray,
+                                        List<Node> originList, List<Node> destinationList, TransportMode[] modes) {
+        int[] path = algorithm.planEdgePath(locArray[0], locArray[1], originList, destinationList, modes);
+        if (path == null || path.length == 0) return -1;
+
+        long duration = ModeStates.accessDuration(graph, graph.getEdgeSource(path[0]), locArray[0]);
+        int prevSlot = ModeStates.NO_MODE;
+        for (int edge : path) {
+            int mode = graph.getEdgeMode(edge);
+            duration += ModeStates.transferCost(prevSlot, mode) + graph.getEdgeDuration(edge);
+            prevSlot = mode;
+        }
+        double egressDistance = graph.distance(graph.getEdgeTarget(path[path.length - 1]), locArray[1]);
+        return duration + RoutePlanner.getDistanceDuration(CSRGraph.MODES[prevSlot], egressDistance);
+    }
+
+    private static int logMismatch(String engine, long duration, long expected) {
+        logger.warn(engine + " duration " + duration + " s differs from Dijkstra's " + expected + " s");
+        return 1;
+    }
 }
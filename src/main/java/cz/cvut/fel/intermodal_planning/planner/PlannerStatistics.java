@@ -12,6 +12,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * Created by Ondrej Prenek on 27/10/2017
@@ -30,9 +31,14 @@ public class PlannerStatistics {
         histogramMap = new HashMap<>();
         final int loopCount = 1000;
 
-        for (int i = 0; i < loopCount; i++) {
-            compareKnownPath(plannerInitializer.routePlanner, i + 1);
-        }
+        List<Location[]> odPairs = IntStream.rangeClosed(1, loopCount)
+                .mapToObj(PlannerStatistics::readKnownODPair)
+                .collect(Collectors.toList());
+
+        BatchRoutePlanner batchRoutePlanner = new BatchRoutePlanner(plannerInitializer.routePlanner);
+        batchRoutePlanner.metasearchRoutes(odPairs,
+                (idx, route) -> addKnownPath(plannerInitializer.routePlanner, route));
+        batchRoutePlanner.shutdown();
 
         logger.info("Avg duration: " + Storage.INTERMODAL_AVG_DURATION / loopCount);
 
@@ -41,18 +47,24 @@ public class PlannerStatistics {
     }
 
     /**
-     * Comparison of path for which OD pair is stored
+     * Reading of the stored OD pair
      *
-     * @param routePlanner RoutePlanner instance
-     * @param count number of compared path due to its serialization
+     * @param count number of the OD pair due to its serialization
+     * @return OD pair
      */
-    private static void compareKnownPath(RoutePlanner routePlanner, int count) {
+    private static Location[] readKnownODPair(int count) {
         String odPairPath = Storage.OD_PAIR_PATH;
         File odFile = new File(odPairPath + "pair_" + count + ".txt");
-        Location[] odPair = SerializationUtils.readODPairFromGson(odFile);
-
-        Route perfectIntermodalPath = routePlanner.metasearchRoute(odPair[0], odPair[1]);
+        return SerializationUtils.readODPairFromGson(odFile);
+    }
 
+    /**
+     * Comparison of path for which OD pair is stored
+     *
+     * @param routePlanner RoutePlanner instance
+     * @param perfectIntermodalPath Route metasearched for the stored OD pair
+     */
+    private static void addKnownPath(RoutePlanner routePlanner, Route perfectIntermodalPath) {
         if (perfectIntermodalPath == null) return;
 
         Storage.INTERMODAL_AVG_DURATION += routePlanner.getRouteDuration(perfectIntermodalPath);
@@ -0,0 +1,151 @@
+package cz.cvut.fel.intermodal_planning.planner;
+
+import cz.cvut.fel.intermodal_planning.graph.model.CSRGraph;
+import cz.cvut.fel.intermodal_planning.planner.model.Location;
+import cz.cvut.fel.intermodal_planning.planner.model.TransportMode;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.ModeStates;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of the metasearched edge paths, paths are stored as the CSRGraph's edge indices.
+ * <p>
+ * Paths are keyed by the snapped origin and destination nodes with their access and egress durations, the allowed
+ * modes and the fingerprint of the graph. Locations share the path only when the search would start and end
+ * with the same durations, so the choice of the candidate nodes is the same, and paths of the previous graph
+ * are never hit again, they are only evicted. Routes are built from the cached paths for the exact locations.
+ * Empty path stands for a query without any path. Hits, misses and evictions are counted in PlannerMetrics.
+ */
+public class RouteCache {
+    private final Map<Key, int[]> paths;
+
+    public RouteCache(int capacity) {
+        paths = new LinkedHashMap<Key, int[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, int[]> eldest) {
+                if (size() <= capacity) return false;
+
+                PlannerMetrics.getInstance().increment("RouteCache.evictions", 1);
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Cache key of the query
+     *
+     * @param graph searched CSR graph
+     * @param origin Origin Location
+     * @param originIds ids of the snapped origin nodes
+     * @param destination Destination Location
+     * @param destinationIds ids of the snapped destination nodes
+     * @param availableModes Allowed Transport Modes
+     * @return Key instance
+     */
+    public static Key createKey(CSRGraph graph, Location origin, int[] originIds, Location destination, int[] destinationIds,
+                                TransportMode[] availableModes) {
+        int modeMask = 0;
+        for (TransportMode mode : availableModes) {
+            modeMask |= 1 << mode.ordinal();
+        }
+
+        int[] sortedOriginIds = originIds.clone();
+        Arrays.sort(sortedOriginIds);
+        long[] originPenalties = new long[sortedOriginIds.length];
+        for (int i = 0; i < sortedOriginIds.length; i++) {
+            originPenalties[i] = ModeStates.accessDuration(graph, sortedOriginIds[i], origin);
+        }
+
+        // egress duration of every destination node by every allowed mode
+        int[] sortedDestinationIds = destinationIds.clone();
+        Arrays.sort(sortedDestinationIds);
+        long[] destinationPenalties = new long[sortedDestinationIds.length * availableModes.length];
+        for (int i = 0; i < sortedDestinationIds.length; i++) {
+            double distance = graph.distance(sortedDestinationIds[i], destination);
+            for (int m = 0; m < availableModes.length; m++) {
+                destinationPenalties[i * availableModes.length + m] = RoutePlanner.getDistanceDuration(availableModes[m], distance);
+            }
+        }
+
+        return new Key(sortedOriginIds, originPenalties, sortedDestinationIds, destinationPenalties, modeMask,
+                graph.getFingerprint());
+    }
+
+    /**
+     * Path lookup
+     *
+     * @param key Key of the query
+     * @return cached edge path, empty whether no path exists, null whether the query is not cached
+     */
+    public synchronized int[] get(Key key) {
+        int[] path = paths.get(key);
+        PlannerMetrics.getInstance().increment(path == null ? "RouteCache.misses" : "RouteCache.hits", 1);
+        return path;
+    }
+
+    /**
+     * @param key Key of the query
+     * @param path metasearched edge path, null whether no path exists, it must not be modified afterwards
+     */
+    public synchronized void put(Key key, int[] path) {
+        paths.put(key, path == null ? new int[0] : path);
+    }
+
+    public synchronized int size() {
+        return paths.size();
+    }
+
+    public synchronized void clear() {
+        paths.clear();
+    }
+
+    /**
+     * Snapped nodes are sorted, their order given by the nearest neighbour search does not matter,
+     * penalties are ordered by the sorted nodes
+     */
+    public static final class Key {
+        private final int[] originIds;
+        private final long[] originPenalties;
+        private final int[] destinationIds;
+        private final long[] destinationPenalties;
+        private final int modeMask;
+        private final long graphVersion;
+        private final int hash;
+
+        private Key(int[] originIds, long[] originPenalties, int[] destinationIds, long[] destinationPenalties,
+                    int modeMask, long graphVersion) {
+            this.originIds = originIds;
+            this.originPenalties = originPenalties;
+            this.destinationIds = destinationIds;
+            this.destinationPenalties = destinationPenalties;
+            this.modeMask = modeMask;
+            this.graphVersion = graphVersion;
+
+            int result = Arrays.hashCode(originIds);
+            result = 31 * result + Arrays.hashCode(originPenalties);
+            result = 31 * result + Arrays.hashCode(destinationIds);
+            result = 31 * result + Arrays.hashCode(destinationPenalties);
+            result = 31 * result + modeMask;
+            hash = 31 * result + Long.hashCode(graphVersion);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+
+            Key key = (Key) o;
+            return modeMask == key.modeMask && graphVersion == key.graphVersion
+                    && Arrays.equals(originIds, key.originIds) && Arrays.equals(originPenalties, key.originPenalties)
+                    && Arrays.equals(destinationIds, key.destinationIds)
+                    && Arrays.equals(destinationPenalties, key.destinationPenalties);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -7,17 +7,43 @@ import com.umotional.basestructures.Graph;
 import com.umotional.basestructures.Node;
 import cz.cvut.fel.intermodal_planning.general.Storage;
 import cz.cvut.fel.intermodal_planning.graph.GraphMaker;
+import cz.cvut.fel.intermodal_planning.graph.model.CSRGraph;
 import cz.cvut.fel.intermodal_planning.graph.model.GraphEdge;
 import cz.cvut.fel.intermodal_planning.general.utils.LocationUtils;
+import cz.cvut.fel.intermodal_planning.general.utils.OutlineUtils;
 import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.BidirectionalShortestPathAlgorithm;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.DurationMatrixAlgorithm;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.IsochroneAlgorithm;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.ModeStates;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.PathfindingAlgorithm;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.ParetoAlgorithm;
 import cz.cvut.fel.intermodal_planning.planner.pathfinding.ShortestPathAlgorithm;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.ProfileWeights;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.ResumableShortestPathAlgorithm;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.RoutingMetric;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.arcflags.ArcFlags;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.cch.CCHMetric;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.cch.CCHQueryEngine;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.ch.CHQueryEngine;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.ch.HubLabels;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.enums.HeuristicType;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.enums.SearchEngineType;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.heuristic.GeoHeuristic;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.heuristic.LandmarkHeuristic;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.kdtree.KDTree;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * Created by Ondrej Prenek on 27/10/2017
@@ -26,56 +52,81 @@ public class RoutePlanner {
     private static final Logger logger = LogManager.getLogger(RoutePlanner.class);
 
     private GraphMaker graphMaker;
+    private RouteCache routeCache;
 
     public RoutePlanner(GraphMaker graphMaker) {
         this.graphMaker = graphMaker;
+        if (Storage.ROUTE_CACHE_SIZE > 0) routeCache = new RouteCache(Storage.ROUTE_CACHE_SIZE);
     }
 
 
     /**
-     * Creation of Route from Graph's Edge sequence
-     * @param edgeList Edge sequence
+     * Creation of Route from CSRGraph's edge path with durations of the steps given by the travel time profiles
+     * or by the weights of the cost profile
+     * @param edgePath edge indices of the path, null whether no path exists
      * @param origin Origin Location
      * @param destination Destination Location
+     * @param departureTime departure time from the origin in seconds since midnight, static durations whether negative
+     * @param profileWeights ProfileWeights of the search, default weights whether null
      * @return Created Route
      */
-    private Route createRouteFromEdgeList(List<GraphEdge> edgeList, Location origin, Location destination) {
+    private Route createRouteFromEdgePath(int[] edgePath, Location origin, Location destination, long departureTime,
+                                          ProfileWeights profileWeights) {
         Route route = new Route();
 
         route.origin = origin;
         route.destination = destination;
+        if (profileWeights != null) route.metric = profileWeights.getMetric();
 
-        if (edgeList == null) return route;
+        if (edgePath == null) return route;
 
+        CSRGraph csrGraph = graphMaker.getCSRGraph();
         Leg tmpLeg = null;
-        GraphEdge edge;
-        for (int i = 0; i < edgeList.size(); i++) {
-            edge = edgeList.get(i);
+        long time = 0;
+        if (departureTime >= 0 && edgePath.length > 0) {
+            int firstNode = csrGraph.getEdgeSource(edgePath[0]);
+            Location firstLocation = new Location(csrGraph.getLatitude(firstNode), csrGraph.getLongitude(firstNode));
+            time = departureTime + getDistanceDuration(TransportMode.WALK, LocationUtils.distance(origin, firstLocation));
+        }
+
+        for (int i = 0; i < edgePath.length; i++) {
+            int edge = edgePath[i];
+            int from = csrGraph.getEdgeSource(edge);
+            int to = csrGraph.getEdgeTarget(edge);
+            TransportMode transportMode = csrGraph.getEdgeTransportMode(edge);
 
             Step step = new Step();
-            step.startLocation = LocationUtils.getNodeLocation(graphMaker.getGraph().getNode(edge.fromId));
-            step.endLocation = LocationUtils.getNodeLocation(graphMaker.getGraph().getNode(edge.toId));
-            step.transportMode = edge.transportMode;
-            step.durationInSeconds = edge.durationInSeconds;
+            step.startLocation = new Location(csrGraph.getLatitude(from), csrGraph.getLongitude(from));
+            step.endLocation = new Location(csrGraph.getLatitude(to), csrGraph.getLongitude(to));
+            step.transportMode = transportMode;
+            step.durationInSeconds = profileWeights == null ? csrGraph.getEdgeDuration(edge) : profileWeights.getEdgeWeight(edge);
+
+            if (departureTime >= 0) {
+                if (i > 0 && transportMode != csrGraph.getEdgeTransportMode(edgePath[i - 1])) {
+                    time += getTransferPenalty(csrGraph.getEdgeTransportMode(edgePath[i - 1]));
+                }
+                step.durationInSeconds = graphMaker.getTravelTimeProfiles().getDuration(edge, time);
+                time += step.durationInSeconds;
+            }
 
             if (i == 0) {
                 tmpLeg = new Leg();
                 tmpLeg.startLocation = step.startLocation;
                 tmpLeg.durationInSeconds = step.durationInSeconds;
                 tmpLeg.transportMode = step.transportMode;
-            } else if (edge.transportMode != tmpLeg.transportMode) {
+            } else if (transportMode != tmpLeg.transportMode) {
                 route.legList.add(tmpLeg);
                 tmpLeg = new Leg();
                 tmpLeg.startLocation = step.startLocation;
-                tmpLeg.durationInSeconds += edge.durationInSeconds;
-                tmpLeg.transportMode = edge.transportMode;
+                tmpLeg.durationInSeconds += step.durationInSeconds;
+                tmpLeg.transportMode = transportMode;
             } else {
-                tmpLeg.durationInSeconds += edge.durationInSeconds;
+                tmpLeg.durationInSeconds += step.durationInSeconds;
             }
             tmpLeg.endLocation = step.endLocation;
             tmpLeg.steps.add(step);
 
-            if (i == edgeList.size()-1) route.legList.add(tmpLeg);
+            if (i == edgePath.length - 1) route.legList.add(tmpLeg);
         }
 
         return route;
@@ -126,11 +177,11 @@ public class RoutePlanner {
      * @return metasearched Route
      */
     public Route metasearchRoute(Node nodeFrom, Node nodeTo, TransportMode... availableModes) {
-        ShortestPathAlgorithm astar = new ShortestPathAlgorithm<>(graphMaker.getGraph());
+        PathfindingAlgorithm<Node> astar = createPathfindingAlgorithm(availableModes);
 
         List<Node> originList = new ArrayList<>();
         List<Node> destinationList = new ArrayList<>();
-        List<GraphEdge> astarPlan;
+        int[] astarPlan;
 
 
         Location locFrom = LocationUtils.getNodeLocation(nodeFrom);
@@ -139,9 +190,16 @@ public class RoutePlanner {
         originList.add(nodeFrom);
         destinationList.add(nodeTo);
 
-        astarPlan = astar.plan(locFrom, locTo, originList, destinationList, availableModes);
+        // nodes are given, there is no snapping
+        long searchStart = System.nanoTime();
+        astarPlan = astar.planEdgePath(locFrom, locTo, originList, destinationList, availableModes);
+        long routeStart = System.nanoTime();
+        Route route = createRouteFromEdgePath(astarPlan, locFrom, locTo, -1, null);
 
-        return createRouteFromEdgeList(astarPlan, locFrom, locTo);
+        route.statistics = astar.getStatistics();
+        recordStatistics(astar.getClass().getSimpleName(), route.statistics, searchStart, searchStart, routeStart);
+
+        return route;
     }
 
     /**
@@ -154,26 +212,379 @@ public class RoutePlanner {
      * @return Metasearched Route
      */
     public Route metasearchRoute(Location origin, Location destination, TransportMode... availableModes) {
-        ShortestPathAlgorithm astar = new ShortestPathAlgorithm<>(graphMaker.getGraph());
+        PathfindingAlgorithm<Node> astar = createPathfindingAlgorithm(availableModes.length == 0 ? TransportMode.availableModes() : availableModes);
 
-        List<Node> originList;
-        List<Node> destinationList;
+        return planRoute(astar, origin, destination, -1, null, routeCache, availableModes);
+    }
 
-        List<GraphEdge> astarPlan;
+    /**
+     * Time-dependent route metasearch, car edges follow the congestion profile
+     *
+     * @param origin Origin Location
+     * @param destination Destination Location
+     * @param departureTime departure time from the origin in seconds since midnight
+     * @param availableModes Allowed Transport Modes to use, all modes whether empty
+     * @return Metasearched Route with durations at the given departure time
+     */
+    public Route metasearchRoute(Location origin, Location destination, long departureTime, TransportMode... availableModes) {
+        ShortestPathAlgorithm<Node> algorithm = createShortestPathAlgorithm();
+        algorithm.setDepartureTime(graphMaker.getTravelTimeProfiles(), departureTime);
 
-        if (availableModes.length == 0) {
-            originList = getNearestNodes(origin, 5);
-            destinationList = getNearestNodes(destination, 5);
+        return planRoute(algorithm, origin, destination, departureTime, null, null, availableModes);
+    }
 
-            astarPlan = astar.plan(origin, destination, originList, destinationList);
-        } else {
-            originList = getNearestNodes(origin, availableModes, true, 5);
-            destinationList = getNearestNodes(destination, availableModes, false, 5);
+    /**
+     * Route metasearch with the named cost profile, the customizable hierarchy is used whether it is available
+     * and all modes are allowed, otherwise the search reads the precomputed weights of the profile
+     *
+     * @param origin Origin Location
+     * @param destination Destination Location
+     * @param profileName name of the profile from Storage.COST_PROFILES
+     * @param availableModes Allowed Transport Modes to use, all modes whether empty
+     * @return Metasearched Route
+     */
+    public Route metasearchRoute(Location origin, Location destination, String profileName, TransportMode... availableModes) {
+        ProfileWeights profileWeights = graphMaker.getProfileWeights(profileName);
+        if (profileWeights == null) {
+            throw new IllegalArgumentException("Unknown cost profile " + profileName);
+        }
 
-            astarPlan = astar.plan(origin, destination, originList, destinationList, availableModes);
+        TransportMode[] searchModes = availableModes.length == 0 ? TransportMode.availableModes() : availableModes;
+        if (graphMaker.getCustomizedMetric(profileWeights.getMetric()) != null && CHQueryEngine.supports(searchModes)) {
+            return metasearchRoute(origin, destination, profileWeights.getMetric());
         }
 
-        return createRouteFromEdgeList(astarPlan, origin, destination);
+        ShortestPathAlgorithm<Node> algorithm = createShortestPathAlgorithm();
+        if (!profileWeights.getMetric().isBoundedByDefault()) {
+            algorithm.setHeuristic(null);
+        }
+        algorithm.setProfileWeights(profileWeights);
+
+        return planRoute(algorithm, origin, destination, -1, profileWeights, null, availableModes);
+    }
+
+    /**
+     * Route metasearch with the weights of the metric, all available modes are allowed
+     *
+     * @param origin Origin Location
+     * @param destination Destination Location
+     * @param metric RoutingMetric, one of Storage.COST_PROFILES, for which the hierarchy is customized
+     * @return Metasearched Route
+     */
+    public Route metasearchRoute(Location origin, Location destination, RoutingMetric metric) {
+        if (graphMaker.getCustomizableHierarchy() == null) {
+            throw new IllegalStateException("Customizable contraction hierarchy was not created");
+        }
+        CCHMetric cchMetric = graphMaker.getCustomizedMetric(metric);
+        if (cchMetric == null) {
+            throw new IllegalArgumentException("Hierarchy is not customized for metric " + metric.name);
+        }
+
+        ProfileWeights profileWeights = graphMaker.getProfileWeights(metric.name);
+        if (profileWeights == null || !profileWeights.getMetric().equals(metric)) {
+            throw new IllegalStateException("Profile weights are not created for metric " + metric.name);
+        }
+
+        CCHQueryEngine<Node> algorithm = new CCHQueryEngine<>(cchMetric, graphMaker.getCSRGraph());
+
+        return planRoute(algorithm, origin, destination, -1, profileWeights, null);
+    }
+
+    /**
+     * Snapping of the locations, search and building of the route, times of the phases are added
+     * to the search statistics, which are recorded to PlannerMetrics and attached to the route
+     *
+     * @param algorithm PathfindingAlgorithm of the query
+     * @param origin Origin Location
+     * @param destination Destination Location
+     * @param departureTime departure time from the origin in seconds since midnight, static durations whether negative
+     * @param profileWeights ProfileWeights of the search, the durations of the route are given by them, default weights whether null
+     * @param cache RouteCache of the paths found with the default weights, null whether the query can not be cached
+     * @param availableModes Allowed Transport Modes to use, all modes whether empty
+     * @return Metasearched Route
+     */
+    private Route planRoute(PathfindingAlgorithm<Node> algorithm, Location origin, Location destination,
+                            long departureTime, ProfileWeights profileWeights, RouteCache cache,
+                            TransportMode... availableModes) {
+        long snapStart = System.nanoTime();
+        List<Node> originList = getCandidateNodes(origin, availableModes, true);
+        List<Node> destinationList = getCandidateNodes(destination, availableModes, false);
+        TransportMode[] searchModes = availableModes.length == 0 ? TransportMode.availableModes() : availableModes;
+
+        long searchStart = System.nanoTime();
+        RouteCache.Key cacheKey = null;
+        int[] plan = null;
+        if (cache != null) {
+            int[] originIds = originList.stream().mapToInt(node -> node.id).toArray();
+            int[] destinationIds = destinationList.stream().mapToInt(node -> node.id).toArray();
+            cacheKey = RouteCache.createKey(graphMaker.getCSRGraph(), origin, originIds, destination, destinationIds, searchModes);
+            plan = cache.get(cacheKey);
+        }
+
+        if (plan != null) {
+            // cached path, the lookup is recorded as the search
+            long routeStart = System.nanoTime();
+            Route route = createRouteFromEdgePath(plan, origin, destination, departureTime, profileWeights);
+
+            route.statistics = new SearchStatistics();
+            route.statistics.originCandidates = originList.size();
+            route.statistics.destinationCandidates = destinationList.size();
+            recordStatistics("RouteCache", route.statistics, snapStart, searchStart, routeStart);
+            return route;
+        }
+
+        plan = algorithm.planEdgePath(origin, destination, originList, destinationList, searchModes);
+        if (cache != null) cache.put(cacheKey, plan);
+        long routeStart = System.nanoTime();
+        Route route = createRouteFromEdgePath(plan, origin, destination, departureTime, profileWeights);
+
+        route.statistics = algorithm.getStatistics();
+        recordStatistics(algorithm.getClass().getSimpleName(), route.statistics, snapStart, searchStart, routeStart);
+
+        return route;
+    }
+
+    /**
+     * Times of the phases are added to the search statistics, which are recorded to PlannerMetrics.
+     * Reconstruction of the edge paths is measured by the algorithm as a part of its search call,
+     * so it is moved from the search time to the reconstruction time.
+     *
+     * @param engine name of the search engine
+     * @param statistics SearchStatistics of the query filled by the algorithm
+     * @param snapStart start of the snapping of the locations
+     * @param searchStart start of the search
+     * @param routeStart start of the building of the result, it ends now
+     */
+    private static void recordStatistics(String engine, SearchStatistics statistics, long snapStart, long searchStart, long routeStart) {
+        statistics.snapNanos = searchStart - snapStart;
+        statistics.searchNanos = routeStart - searchStart - statistics.reconstructNanos;
+        statistics.reconstructNanos += System.nanoTime() - routeStart;
+
+        PlannerMetrics.getInstance().record(engine, statistics);
+        logger.debug(engine + " statistics: " + statistics);
+    }
+
+    /**
+     * Metasearch of the optimal route and its meaningfully different alternatives from one pair of search trees
+     *
+     * @param origin Origin Location
+     * @param destination Destination Location
+     * @param count maximal number of routes
+     * @param availableModes Allowed Transport Modes to use, all modes whether empty
+     * @return List of metasearched Routes ordered by duration
+     */
+    public List<Route> metasearchAlternativeRoutes(Location origin, Location destination, int count, TransportMode... availableModes) {
+        BidirectionalShortestPathAlgorithm<Node> algorithm = new BidirectionalShortestPathAlgorithm<>(graphMaker.getCSRGraph());
+        TransportMode[] searchModes = availableModes.length == 0 ? TransportMode.availableModes() : availableModes;
+
+        long snapStart = System.nanoTime();
+        List<Node> originList = getCandidateNodes(origin, availableModes, true);
+        List<Node> destinationList = getCandidateNodes(destination, availableModes, false);
+
+        long searchStart = System.nanoTime();
+        List<int[]> plans = algorithm.planAlternatives(origin, destination, originList, destinationList, count, searchModes);
+
+        long routeStart = System.nanoTime();
+        List<Route> routes = plans.stream()
+                .map(plan -> createRouteFromEdgePath(plan, origin, destination, -1, null))
+                .collect(Collectors.toList());
+
+        // routes share the statistics of the single search
+        SearchStatistics statistics = algorithm.getStatistics();
+        routes.forEach(route -> route.statistics = statistics);
+        recordStatistics("BidirectionalShortestPathAlgorithm.alternatives", statistics, snapStart, searchStart, routeStart);
+
+        return routes;
+    }
+
+    /**
+     * Metasearch of the Pareto optimal routes with respect to duration and number of transfers
+     *
+     * @param origin Origin Location
+     * @param destination Destination Location
+     * @param availableModes Allowed Transport Modes to use, all modes whether empty
+     * @return List of metasearched Routes ordered by number of transfers, each faster than the previous one
+     */
+    public List<Route> metasearchParetoRoutes(Location origin, Location destination, TransportMode... availableModes) {
+        ParetoAlgorithm<Node> algorithm = new ParetoAlgorithm<>(graphMaker.getCSRGraph());
+        TransportMode[] searchModes = availableModes.length == 0 ? TransportMode.availableModes() : availableModes;
+
+        long snapStart = System.nanoTime();
+        List<Node> originList = getCandidateNodes(origin, availableModes, true);
+        List<Node> destinationList = getCandidateNodes(destination, availableModes, false);
+
+        long searchStart = System.nanoTime();
+        List<int[]> plans = algorithm.plan(origin, destination, originList, destinationList, searchModes);
+
+        long routeStart = System.nanoTime();
+        List<Route> routes = plans.stream()
+                .map(plan -> createRouteFromEdgePath(plan, origin, destination, -1, null))
+                .collect(Collectors.toList());
+
+        // routes share the statistics of the single search
+        SearchStatistics statistics = algorithm.getStatistics();
+        routes.forEach(route -> route.statistics = statistics);
+        recordStatistics(algorithm.getClass().getSimpleName(), statistics, snapStart, searchStart, routeStart);
+
+        return routes;
+    }
+
+    /**
+     * Duration metasearch without the route, it is answered by the hub labels whether they are available
+     *
+     * @param origin Origin Location
+     * @param destination Destination Location
+     * @return duration in seconds including access and egress, -1 whether the destination is not reachable
+     */
+    public long metasearchDuration(Location origin, Location destination) {
+        HubLabels hubLabels = graphMaker.getHubLabels();
+        if (hubLabels == null) {
+            return metasearchDurationMatrix(new Location[]{origin}, new Location[]{destination})[0][0];
+        }
+
+        long snapStart = System.nanoTime();
+        List<Node> originList = getNearestNodes(origin, 5);
+        List<Node> destinationList = getNearestNodes(destination, 5);
+
+        long searchStart = System.nanoTime();
+        long duration = hubLabels.queryDuration(graphMaker.getCSRGraph(), origin, destination, originList, destinationList);
+
+        // labels are only intersected, there is no search space to count
+        SearchStatistics statistics = new SearchStatistics();
+        statistics.originCandidates = originList.size();
+        statistics.destinationCandidates = destinationList.size();
+        recordStatistics(HubLabels.class.getSimpleName(), statistics, snapStart, searchStart, System.nanoTime());
+
+        return duration;
+    }
+
+    /**
+     * Duration matrix metasearch, one search from every origin computes durations to all destinations,
+     * searches from different origins run in parallel
+     *
+     * @param origins Origin Locations
+     * @param destinations Destination Locations
+     * @param availableModes Allowed Transport Modes to use, all modes whether empty
+     * @return [origin][destination] durations in seconds, -1 whether the destination is not reachable
+     */
+    public long[][] metasearchDurationMatrix(Location[] origins, Location[] destinations, TransportMode... availableModes) {
+        TransportMode[] searchModes = availableModes.length == 0 ? TransportMode.availableModes() : availableModes;
+
+        List<List<Node>> destinationNodes = Arrays.stream(destinations)
+                .map(destination -> getCandidateNodes(destination, availableModes, false))
+                .collect(Collectors.toList());
+
+        DurationMatrixAlgorithm<Node> algorithm = new DurationMatrixAlgorithm<>(graphMaker.getCSRGraph());
+        algorithm.setDestinations(destinations, destinationNodes);
+
+        // every search from an origin is recorded as one query
+        long[][] durationMatrix = new long[origins.length][];
+        IntStream.range(0, origins.length).parallel().forEach(i -> {
+            SearchStatistics statistics = new SearchStatistics();
+            long snapStart = System.nanoTime();
+            List<Node> originNodes = getCandidateNodes(origins[i], availableModes, true);
+
+            long searchStart = System.nanoTime();
+            durationMatrix[i] = algorithm.planDurations(origins[i], originNodes, destinations.length, statistics, searchModes);
+            recordStatistics(algorithm.getClass().getSimpleName(), statistics, snapStart, searchStart, System.nanoTime());
+        });
+
+        return durationMatrix;
+    }
+
+    /**
+     * Isochrone metasearch, nodes reachable within the bands are aggregated into grid cells of ISOCHRONE_CELL_SIZE_E3,
+     * cells of every band are merged into outline polygons
+     *
+     * @param origin Origin Location
+     * @param bandDurations maximal durations of the bands in seconds
+     * @param availableModes Allowed Transport Modes to use, all modes whether empty
+     * @return IsochroneBand for every band duration, each band covers the areas of the shorter bands
+     */
+    public List<IsochroneBand> metasearchIsochrone(Location origin, long[] bandDurations, TransportMode... availableModes) {
+        TransportMode[] searchModes = availableModes.length == 0 ? TransportMode.availableModes() : availableModes;
+        long snapStart = System.nanoTime();
+        List<Node> originNodes = getCandidateNodes(origin, availableModes, true);
+
+        long searchStart = System.nanoTime();
+        long budget = Arrays.stream(bandDurations).max().orElse(0);
+        CSRGraph csrGraph = graphMaker.getCSRGraph();
+        IsochroneAlgorithm<Node> algorithm = new IsochroneAlgorithm<>(csrGraph);
+        long[] nodeDurations = algorithm.planNodeDurations(origin, originNodes, budget, searchModes);
+        long routeStart = System.nanoTime();
+
+        // minimal duration of every reached cell
+        Map<Long, Long> cellDurations = new HashMap<>();
+        for (int nodeId = 0; nodeId < nodeDurations.length; nodeId++) {
+            if (nodeDurations[nodeId] == -1) continue;
+
+            int cellLat = Math.floorDiv((int) Math.floor(csrGraph.getLatitude(nodeId) * 1E3), Storage.ISOCHRONE_CELL_SIZE_E3);
+            int cellLon = Math.floorDiv((int) Math.floor(csrGraph.getLongitude(nodeId) * 1E3), Storage.ISOCHRONE_CELL_SIZE_E3);
+            cellDurations.merge(OutlineUtils.pack(cellLat, cellLon), nodeDurations[nodeId], Math::min);
+        }
+
+        List<IsochroneBand> bands = new ArrayList<>();
+        for (long bandDuration : bandDurations) {
+            Set<Long> cells = new HashSet<>();
+            cellDurations.forEach((cell, duration) -> {
+                if (duration <= bandDuration) cells.add(cell);
+            });
+
+            IsochroneBand band = new IsochroneBand(bandDuration);
+            band.polygons = OutlineUtils.traceOutline(cells, Storage.ISOCHRONE_CELL_SIZE_E3 / 1E3);
+            bands.add(band);
+        }
+
+        // aggregation and tracing of the cells is recorded as the reconstruction
+        recordStatistics(algorithm.getClass().getSimpleName(), algorithm.getStatistics(), snapStart, searchStart, routeStart);
+
+        return bands;
+    }
+
+    /**
+     * Creation of pathfinding algorithm with search engine and heuristic selected in Storage
+     *
+     * @param availableModes Allowed Transport Modes to use
+     * @return PathfindingAlgorithm instance
+     */
+    private PathfindingAlgorithm<Node> createPathfindingAlgorithm(TransportMode... availableModes) {
+        // hierarchy contains all modes, restricted queries fall back to the bidirectional search
+        if (Storage.SEARCH_ENGINE == SearchEngineType.CONTRACTION_HIERARCHIES && graphMaker.getContractionHierarchy() != null
+                && CHQueryEngine.supports(availableModes)) {
+            return new CHQueryEngine<>(graphMaker.getContractionHierarchy(), graphMaker.getCSRGraph());
+        }
+        if (Storage.SEARCH_ENGINE == SearchEngineType.RESUMABLE && graphMaker.getSearchTreeCache() != null) {
+            return new ResumableShortestPathAlgorithm<>(graphMaker.getSearchTreeCache());
+        }
+        if (Storage.SEARCH_ENGINE != SearchEngineType.UNIDIRECTIONAL) {
+            return new BidirectionalShortestPathAlgorithm<>(graphMaker.getCSRGraph());
+        }
+
+        ShortestPathAlgorithm<Node> algorithm = createShortestPathAlgorithm();
+
+        // flags are computed for static durations over all modes
+        if (Storage.USE_ARC_FLAGS && graphMaker.getArcFlags() != null && ArcFlags.supports(availableModes)) {
+            algorithm.setArcFlags(graphMaker.getArcFlags());
+        }
+        return algorithm;
+    }
+
+    /**
+     * Unidirectional search with the configured heuristic, static durations are lower bounds
+     * of the time-dependent ones, so the heuristic can be used by the time-dependent search as well.
+     * Haversine heuristic is not used on graphs with zero duration edges, it is not consistent there.
+     *
+     * @return ShortestPathAlgorithm
+     */
+    private ShortestPathAlgorithm<Node> createShortestPathAlgorithm() {
+        ShortestPathAlgorithm<Node> algorithm = new ShortestPathAlgorithm<>(graphMaker.getCSRGraph());
+
+        if (Storage.HEURISTIC_TYPE == HeuristicType.HAVERSINE && !graphMaker.getCSRGraph().hasZeroDurationEdges()) {
+            algorithm.setHeuristic(new GeoHeuristic(graphMaker.getCSRGraph()));
+        } else if (Storage.HEURISTIC_TYPE == HeuristicType.LANDMARKS && graphMaker.getLandmarkTables() != null) {
+            algorithm.setHeuristic(new LandmarkHeuristic(graphMaker.getLandmarkTables()));
+        }
+        return algorithm;
     }
 
     /**
@@ -228,19 +639,27 @@ public class RoutePlanner {
         return refoundedRoute;
     }
 
+    /**
+     * Candidate nodes of the query location, the general KD tree is searched whether all modes are allowed
+     *
+     * @param location Location for which nearest nodes are searched
+     * @param availableModes Allowed Transport Modes, all modes whether empty
+     * @param isIngoingMode check whether it should be looked for ingoing modes or outgoing modes
+     * @return List of the 5 nearest Nodes
+     */
+    private List<Node> getCandidateNodes(Location location, TransportMode[] availableModes, boolean isIngoingMode) {
+        return availableModes.length == 0 ? getNearestNodes(location, 5)
+                : getNearestNodes(location, availableModes, isIngoingMode, 5);
+    }
+
     /**
      * Nearest nodes for given location
      * @param location Location for which nearest nodes are searched
      * @param count number of Nodes, which is returned
      * @return  List of Nearest Nodes
      */
-    private List<Node> getNearestNodes(Location location, int count) {
-        Object[] nodeIdArr = graphMaker.getKdTree().nearest(location.toDoubleArray(), count);
-
-        return Arrays.stream(nodeIdArr)
-                .map(object -> (int) object)
-                .map(nodeId -> graphMaker.getGraph().getNode(nodeId))
-                .collect(Collectors.toList());
+    List<Node> getNearestNodes(Location location, int count) {
+        return getNodes(getNearestNodeIds(location, null, false, count));
     }
 
     /**
@@ -253,13 +672,44 @@ public class RoutePlanner {
      * @return List of Nearest Nodes
      */
     private List<Node> getNearestNodes(Location location, TransportMode[] modeArr, boolean isIngoingMode, int count) {
-        int idx = ThreadLocalRandom.current().nextInt(modeArr.length);
-        Object[] nodeIdArr = graphMaker.getKdTreeForMode(modeArr[idx], isIngoingMode).nearest(location.toDoubleArray(), count);
+        return getNodes(getNearestNodeIds(location, modeArr, isIngoingMode, count));
+    }
 
-        return Arrays
-                .stream(nodeIdArr)
-                .map(nodeid -> graphMaker.getGraph().getNode((int) nodeid))
-                .collect(Collectors.toList());
+    /**
+     * Ids of the nearest nodes, they are looked up in the SnappingCache first
+     *
+     * @param location Location for which nearest nodes are searched
+     * @param modeArr Transport Modes, KD tree of a random one of them is searched, null for the general KD tree
+     * @param isIngoingMode check whether it should be looked for ingoing modes or outgoing modes
+     * @param count number of Nodes, which is returned
+     * @return ids of the nearest nodes, the array must not be modified
+     */
+    private int[] getNearestNodeIds(Location location, TransportMode[] modeArr, boolean isIngoingMode, int count) {
+        // the mode is picked before the lookup, candidates are cached for the searched KD tree only
+        TransportMode mode = modeArr == null ? null : modeArr[ThreadLocalRandom.current().nextInt(modeArr.length)];
+
+        SnappingCache snappingCache = graphMaker.getSnappingCache();
+        long cacheKey = SnappingCache.createKey(location, mode, isIngoingMode, count);
+        int[] nodeIds = snappingCache == null ? null : snappingCache.get(cacheKey);
+        if (nodeIds != null) return nodeIds;
+
+        KDTree kdTree = mode == null ? graphMaker.getKdTree() : graphMaker.getKdTreeForMode(mode, isIngoingMode);
+        Object[] nodeIdArr = kdTree.nearest(location.toDoubleArray(), count);
+
+        nodeIds = new int[nodeIdArr.length];
+        for (int i = 0; i < nodeIds.length; i++) {
+            nodeIds[i] = (int) nodeIdArr[i];
+        }
+        if (snappingCache != null) snappingCache.put(cacheKey, nodeIds);
+        return nodeIds;
+    }
+
+    private List<Node> getNodes(int[] nodeIds) {
+        List<Node> nodes = new ArrayList<>(nodeIds.length);
+        for (int nodeId : nodeIds) {
+            nodes.add(graphMaker.getGraph().getNode(nodeId));
+        }
+        return nodes;
     }
 
     private Node getNearestNode(Location location) {
@@ -277,6 +727,8 @@ public class RoutePlanner {
      * @return Route Duration in Seconds
      */
     public long getRouteDuration(Route route) {
+        if (route.metric != null) return getRouteDuration(route, route.metric);
+
         long duration = route.legList.stream().mapToLong(o -> o.durationInSeconds).sum();
 
         double originNodeDist = LocationUtils.distance(route.origin, route.legList.get(0).startLocation);
@@ -298,6 +750,31 @@ public class RoutePlanner {
         return duration;
     }
 
+    /**
+     * Route Duration given by the weights of the metric, access, egress and transfers are computed as in the search
+     *
+     * @param route Route object with the step durations of the metric
+     * @param metric RoutingMetric of the search
+     * @return Route Duration in Seconds
+     */
+    private long getRouteDuration(Route route, RoutingMetric metric) {
+        long duration = route.legList.stream().mapToLong(o -> o.durationInSeconds).sum();
+
+        Leg firstLeg = route.legList.get(0);
+        duration += metric.getDistanceDuration(TransportMode.WALK, LocationUtils.distance(route.origin, firstLeg.startLocation));
+        duration += metric.getTransferCost(ModeStates.NO_MODE, firstLeg.transportMode.ordinal());
+
+        for (int i = 1; i < route.legList.size(); i++) {
+            duration += metric.getTransferCost(route.legList.get(i - 1).transportMode.ordinal(),
+                    route.legList.get(i).transportMode.ordinal());
+        }
+
+        Leg lastLeg = route.legList.get(route.legList.size() - 1);
+        duration += metric.getDistanceDuration(lastLeg.transportMode, LocationUtils.distance(route.destination, lastLeg.endLocation));
+
+        return duration;
+    }
+
     /**
      * Method is called when the previous and current method differ
      *
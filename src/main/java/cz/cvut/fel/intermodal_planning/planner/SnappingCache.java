@@ -0,0 +1,64 @@
+package cz.cvut.fel.intermodal_planning.planner;
+
+import cz.cvut.fel.intermodal_planning.planner.model.Location;
+import cz.cvut.fel.intermodal_planning.planner.model.TransportMode;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of the candidate nodes of the snapped locations.
+ * <p>
+ * Locations are quantized to the E3 cells (see Location.latE3), candidates of the first location snapped in the cell
+ * are used for the whole cell. Key contains the cell, the mode of the searched KD tree, whether the mode is ingoing
+ * and the number of candidates. GraphMaker creates a new cache with every KD tree, so the candidates of the previous
+ * graph are never used. Hits and misses are counted in PlannerMetrics.
+ */
+public class SnappingCache {
+    private final Map<Long, int[]> candidates;
+
+    public SnappingCache(int capacity) {
+        candidates = new LinkedHashMap<Long, int[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, int[]> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Cache key of the snapping
+     *
+     * @param location snapped Location
+     * @param mode Transport Mode of the searched KD tree, null for the general KD tree
+     * @param isIngoingMode whether the mode is ingoing or outgoing
+     * @param count number of candidates
+     * @return key packed to long
+     */
+    public static long createKey(Location location, TransportMode mode, boolean isIngoingMode, int count) {
+        int modeMask = mode == null ? 0 : (1 << mode.ordinal()) << 1 | (isIngoingMode ? 1 : 0);
+
+        long key = location.latE3() + 90000;
+        key = key << 19 | (location.lonE3() + 180000);
+        key = key << 8 | modeMask;
+        return key << 8 | count;
+    }
+
+    /**
+     * @param key key created by createKey()
+     * @return candidate node ids or null whether the cell is not cached
+     */
+    public synchronized int[] get(long key) {
+        int[] nodeIds = candidates.get(key);
+        PlannerMetrics.getInstance().increment(nodeIds == null ? "SnappingCache.misses" : "SnappingCache.hits", 1);
+        return nodeIds;
+    }
+
+    /**
+     * @param key key created by createKey()
+     * @param nodeIds candidate node ids, they must not be modified afterwards
+     */
+    public synchronized void put(long key, int[] nodeIds) {
+        candidates.put(key, nodeIds);
+    }
+}
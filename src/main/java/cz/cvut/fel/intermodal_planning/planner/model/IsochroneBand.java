@@ -0,0 +1,17 @@
+package cz.cvut.fel.intermodal_planning.planner.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Area reachable from the origin within the band's duration, represented by outlines of the reached grid cells
+ */
+public class IsochroneBand {
+    public long maxDurationInSeconds;
+    public List<IsochronePolygon> polygons;
+
+    public IsochroneBand(long maxDurationInSeconds) {
+        this.maxDurationInSeconds = maxDurationInSeconds;
+        polygons = new ArrayList<>();
+    }
+}
@@ -0,0 +1,18 @@
+package cz.cvut.fel.intermodal_planning.planner.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Connected part of the isochrone band, outline of its grid cells with the unreachable holes.
+ * Rings are closed, the exterior ring is counter-clockwise and the holes are clockwise.
+ */
+public class IsochronePolygon {
+    public List<Location> exterior;
+    public List<List<Location>> holes;
+
+    public IsochronePolygon(List<Location> exterior) {
+        this.exterior = exterior;
+        holes = new ArrayList<>();
+    }
+}
@@ -1,5 +1,7 @@
 package cz.cvut.fel.intermodal_planning.planner.model;
 
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.RoutingMetric;
+
 import java.util.ArrayList;
 import java.util.List;
 
@@ -9,6 +11,8 @@ import java.util.List;
 public class Route {
     public List<Leg> legList;
     public Location origin, destination;
+    public SearchStatistics statistics; // null whether the route was not metasearched
+    public RoutingMetric metric; // durations are given by the cost profile, null whether by the default weights
 
     public Route() {
         legList = new ArrayList<>();
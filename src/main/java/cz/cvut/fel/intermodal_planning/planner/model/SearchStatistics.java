@@ -0,0 +1,26 @@
+package cz.cvut.fel.intermodal_planning.planner.model;
+
+/**
+ * Search space counters of one planner query, search counters are filled by the PathfindingAlgorithm,
+ * times of the snap and search phases by the RoutePlanner
+ */
+public class SearchStatistics {
+    public long settledStates;
+    public long relaxedEdges;
+    public long queuePushes;
+    public long decreaseKeys;
+    public int originCandidates;
+    public int destinationCandidates;
+
+    public long snapNanos;
+    public long searchNanos;
+    public long reconstructNanos;
+
+    @Override
+    public String toString() {
+        return "settled " + settledStates + ", relaxed " + relaxedEdges + ", pushes " + queuePushes
+                + ", decreaseKeys " + decreaseKeys + ", candidates " + originCandidates + "/" + destinationCandidates
+                + ", snap " + snapNanos / 1000 + " us, search " + searchNanos / 1000
+                + " us, reconstruct " + reconstructNanos / 1000 + " us";
+    }
+}
@@ -0,0 +1,392 @@
+package cz.cvut.fel.intermodal_planning.planner.pathfinding;
+
+import com.umotional.basestructures.Node;
+import cz.cvut.fel.intermodal_planning.general.Storage;
+import cz.cvut.fel.intermodal_planning.graph.model.CSRGraph;
+import cz.cvut.fel.intermodal_planning.graph.model.GraphEdge;
+import cz.cvut.fel.intermodal_planning.planner.RoutePlanner;
+import cz.cvut.fel.intermodal_planning.planner.model.Location;
+import cz.cvut.fel.intermodal_planning.planner.model.SearchStatistics;
+import cz.cvut.fel.intermodal_planning.planner.model.TransportMode;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.enums.PriorityQueueType;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.queue.NodePriorityQueue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Bidirectional Dijkstra's algorithm over the mode-expanded graph (see ModeStates).
+ * <p>
+ * Forward search runs from the origin nodes, backward search from the destination nodes over the reverse adjacency.
+ * Searches meet in a node, where the forward state's incoming mode and the backward state's outgoing mode
+ * have to satisfy RoutePlanner.isTransferPossible, the transfer penalty is added to the meeting cost.
+ */
+public class BidirectionalShortestPathAlgorithm<TNode extends Node> implements PathfindingAlgorithm<TNode> {
+    private static final long INFINITY = SearchWorkspace.INFINITY;
+
+    private final CSRGraph graph;
+    private final PriorityQueueType queueType;
+
+    private SearchWorkspace forward;
+    private SearchWorkspace backward;
+    private NodePriorityQueue forwardQueue;
+    private NodePriorityQueue backwardQueue;
+
+    private boolean[] allowedModes;
+    private int[] destinationIds;
+    private double[] destinationDistances;
+
+    private long bestDuration;
+    private int bestForwardState;
+    private int bestBackwardState;
+    private SearchStatistics statistics = new SearchStatistics();
+
+    /**
+     * Forward settled states, recorded only for planAlternatives()
+     */
+    private int[] forwardSettledStates;
+    private int forwardSettledCount;
+
+    public BidirectionalShortestPathAlgorithm(CSRGraph graph) {
+        this(graph, Storage.PRIORITY_QUEUE_TYPE);
+    }
+
+    public BidirectionalShortestPathAlgorithm(CSRGraph graph, PriorityQueueType queueType) {
+        this.graph = graph;
+        this.queueType = queueType;
+    }
+
+    @Override
+    public List<GraphEdge> plan(Location origin, Location destination, List<TNode> originNodes, List<TNode> destinationNodes,
+                                TransportMode... availableModes) {
+        return graph.getGraphEdges(planEdgePath(origin, destination, originNodes, destinationNodes, availableModes));
+    }
+
+    @Override
+    public int[] planEdgePath(Location origin, Location destination, List<TNode> originNodes, List<TNode> destinationNodes,
+                              TransportMode... availableModes) {
+        init(availableModes);
+        forwardSettledStates = null;
+        seed(origin, destination, originNodes, destinationNodes);
+
+        while (!forwardQueue.isEmpty() || !backwardQueue.isEmpty()) {
+            long forwardMin = forwardQueue.isEmpty() ? 0 : forwardQueue.peekMinKey();
+            long backwardMin = backwardQueue.isEmpty() ? 0 : backwardQueue.peekMinKey();
+            if (forwardMin + backwardMin >= bestDuration) break;
+
+            if (backwardQueue.isEmpty() || (!forwardQueue.isEmpty() && forwardMin <= backwardMin)) {
+                settleForward(forwardQueue.pollMin());
+            } else {
+                settleBackward(backwardQueue.pollMin());
+            }
+        }
+
+        if (bestDuration == INFINITY) return null;
+
+        long reconstructStart = System.nanoTime();
+        int[] path = buildEdgePath(bestForwardState, bestBackwardState);
+        statistics.reconstructNanos = System.nanoTime() - reconstructStart;
+        return path;
+    }
+
+    /**
+     * Alternative paths by the via-node method - both search trees are grown until their minimum exceeds the optimal
+     * duration stretched by ALTERNATIVE_MAX_STRETCH, every node settled by the forward search is a via node candidate.
+     * Candidates are tried in order of duration, nodes of every tried path are not tried again, so each plateau
+     * of the two trees gives a single path. Path is accepted whether it has no cycle and its duration shared
+     * with already accepted paths is at most ALTERNATIVE_MAX_SHARING of its own duration.
+     *
+     * @param origin Origin Location
+     * @param destination Destination Location
+     * @param originNodes List of Nodes, FROM which the path is searched
+     * @param destinationNodes List of Nodes, TO which the path is searched
+     * @param count maximal number of paths
+     * @param availableModes List of transport modes, which are allowed to use
+     * @return CSRGraph edge indices of the optimal path and its alternatives ordered by duration, empty whether no path exists
+     */
+    public List<int[]> planAlternatives(Location origin, Location destination, List<TNode> originNodes,
+                                        List<TNode> destinationNodes, int count, TransportMode... availableModes) {
+        init(availableModes);
+        forwardSettledStates = new int[64];
+        forwardSettledCount = 0;
+        seed(origin, destination, originNodes, destinationNodes);
+
+        while (true) {
+            long limit = stretchedDuration(bestDuration);
+            boolean forwardActive = !forwardQueue.isEmpty() && forwardQueue.peekMinKey() <= limit;
+            boolean backwardActive = !backwardQueue.isEmpty() && backwardQueue.peekMinKey() <= limit;
+            if (!forwardActive && !backwardActive) break;
+
+            if (!backwardActive || (forwardActive && forwardQueue.peekMinKey() <= backwardQueue.peekMinKey())) {
+                settleForward(forwardQueue.pollMin());
+            } else {
+                settleBackward(backwardQueue.pollMin());
+            }
+        }
+
+        List<int[]> paths = new ArrayList<>();
+        if (bestDuration == INFINITY) return paths;
+
+        long reconstructStart = System.nanoTime();
+        List<long[]> candidates = collectViaCandidates(stretchedDuration(bestDuration));
+        candidates.sort(Comparator.comparingLong(candidate -> candidate[0]));
+
+        Set<Integer> triedNodes = new HashSet<>();
+        Set<Integer> acceptedEdges = new HashSet<>();
+
+        for (long[] candidate : candidates) {
+            if (paths.size() >= count) break;
+            int forwardState = (int) candidate[1];
+            int backwardState = (int) candidate[2];
+            if (triedNodes.contains(ModeStates.node(forwardState))) continue;
+
+            int[] edges = buildEdgePath(forwardState, backwardState);
+            boolean isSimple = true;
+            Set<Integer> pathStates = new HashSet<>();
+            long edgeDuration = 0;
+            long sharedDuration = 0;
+
+            // node can be visited repeatedly by different modes, but the state can not
+            for (int edge : edges) {
+                isSimple &= pathStates.add(ModeStates.state(graph.getEdgeTarget(edge), graph.getEdgeMode(edge)));
+                triedNodes.add(graph.getEdgeSource(edge));
+                triedNodes.add(graph.getEdgeTarget(edge));
+                edgeDuration += graph.getEdgeDuration(edge);
+                if (acceptedEdges.contains(edge)) sharedDuration += graph.getEdgeDuration(edge);
+            }
+
+            if (!isSimple || sharedDuration > Storage.ALTERNATIVE_MAX_SHARING * edgeDuration) continue;
+
+            for (int edge : edges) {
+                acceptedEdges.add(edge);
+            }
+            paths.add(edges);
+        }
+
+        statistics.reconstructNanos = System.nanoTime() - reconstructStart;
+        return paths;
+    }
+
+    /**
+     * Finding path in model using all possible transport modes - Many to many
+     *
+     * @param origin Origin Location
+     * @param destination Destination Location
+     * @param originNodes List of Nodes, FROM which the path is searched
+     * @param destinationNodes List of Nodes, TO which the path is searched
+     * @return Edge sequence representing the model path
+     */
+    public List<GraphEdge> plan(Location origin, Location destination, List<TNode> originNodes, List<TNode> destinationNodes) {
+        return plan(origin, destination, originNodes, destinationNodes, TransportMode.availableModes());
+    }
+
+    @Override
+    public int getSettledNodeCount() {
+        return (int) statistics.settledStates;
+    }
+
+    @Override
+    public SearchStatistics getStatistics() {
+        return statistics;
+    }
+
+    private void seed(Location origin, Location destination, List<TNode> originNodes, List<TNode> destinationNodes) {
+        statistics.originCandidates = originNodes.size();
+        statistics.destinationCandidates = destinationNodes.size();
+
+        for (TNode originNode : originNodes) {
+            long originPenalty = ModeStates.accessDuration(graph, originNode.id, origin);
+            update(forward, ModeStates.state(originNode.id, ModeStates.NO_MODE), originPenalty, -1, -1);
+        }
+
+        destinationIds = new int[destinationNodes.size()];
+        destinationDistances = new double[destinationNodes.size()];
+        for (int i = 0; i < destinationIds.length; i++) {
+            destinationIds[i] = destinationNodes.get(i).id;
+            destinationDistances[i] = graph.distance(destinationIds[i], destination);
+            update(backward, ModeStates.state(destinationIds[i], ModeStates.NO_MODE), 0, -1, -1);
+        }
+    }
+
+    private void init(TransportMode[] availableModes) {
+        allowedModes = ModeStates.allowedModes(availableModes);
+
+        forward = SearchWorkspace.acquire(graph, queueType, SearchWorkspace.FORWARD);
+        backward = SearchWorkspace.acquire(graph, queueType, SearchWorkspace.BACKWARD);
+        forwardQueue = forward.getQueue();
+        backwardQueue = backward.getQueue();
+
+        bestDuration = INFINITY;
+        bestForwardState = -1;
+        bestBackwardState = -1;
+        statistics = new SearchStatistics();
+    }
+
+    private void settleForward(int state) {
+        forward.close(state);
+        statistics.settledStates++;
+
+        if (forwardSettledStates != null) {
+            if (forwardSettledCount == forwardSettledStates.length) {
+                forwardSettledStates = Arrays.copyOf(forwardSettledStates, forwardSettledCount * 2);
+            }
+            forwardSettledStates[forwardSettledCount++] = state;
+        }
+
+        int nodeFrom = ModeStates.node(state);
+        int prevSlot = ModeStates.slot(state);
+        long duration = forward.getDuration(state);
+
+        // meeting with all backward states of the node
+        for (int slot = 0; slot < ModeStates.SLOT_COUNT; slot++) {
+            meet(state, ModeStates.state(nodeFrom, slot));
+        }
+
+        for (int edge = graph.getOutBegin(nodeFrom); edge < graph.getOutEnd(nodeFrom); edge++) {
+            int edgeMode = graph.getEdgeMode(edge);
+            int transferCost = ModeStates.transferCost(prevSlot, edgeMode);
+            if (!allowedModes[edgeMode] || transferCost < 0) continue;
+
+            int stateTo = ModeStates.state(graph.getEdgeTarget(edge), edgeMode);
+            if (forward.isClosed(stateTo)) continue;
+
+            update(forward, stateTo, duration + graph.getEdgeDuration(edge) + transferCost, edge, state);
+        }
+    }
+
+    private void settleBackward(int state) {
+        backward.close(state);
+        statistics.settledStates++;
+
+        int nodeTo = ModeStates.node(state);
+        int nextSlot = ModeStates.slot(state);
+        long duration = backward.getDuration(state);
+
+        // meeting with all forward states of the node
+        for (int slot = 0; slot < ModeStates.SLOT_COUNT; slot++) {
+            meet(ModeStates.state(nodeTo, slot), state);
+        }
+
+        for (int i = graph.getInBegin(nodeTo); i < graph.getInEnd(nodeTo); i++) {
+            int edge = graph.getInEdge(i);
+            int edgeMode = graph.getEdgeMode(edge);
+            if (!allowedModes[edgeMode]) continue;
+
+            long transferCost = nextSlot == ModeStates.NO_MODE
+                    ? destinationPenalty(nodeTo, edgeMode)
+                    : ModeStates.transferCost(edgeMode, nextSlot);
+            if (transferCost < 0) continue;
+
+            int stateFrom = ModeStates.state(graph.getEdgeSource(edge), edgeMode);
+            if (backward.isClosed(stateFrom)) continue;
+
+            update(backward, stateFrom, duration + graph.getEdgeDuration(edge) + transferCost, edge, state);
+        }
+    }
+
+    /**
+     * Candidate path through the forward state and the backward state of the same node
+     */
+    private void meet(int forwardState, int backwardState) {
+        long duration = meetingDuration(forwardState, backwardState);
+        if (duration < bestDuration) {
+            bestDuration = duration;
+            bestForwardState = forwardState;
+            bestBackwardState = backwardState;
+        }
+    }
+
+    /**
+     * Duration of the path through the forward state and the backward state of the same node
+     *
+     * @return duration or INFINITY whether there is no such path
+     */
+    private long meetingDuration(int forwardState, int backwardState) {
+        long forwardDuration = forward.getDuration(forwardState);
+        long backwardDuration = backward.getDuration(backwardState);
+        if (forwardDuration == INFINITY || backwardDuration == INFINITY) return INFINITY;
+
+        int inSlot = ModeStates.slot(forwardState);
+        int outSlot = ModeStates.slot(backwardState);
+        long transferCost;
+
+        if (outSlot == ModeStates.NO_MODE) {
+            // path has to contain at least one edge
+            if (inSlot == ModeStates.NO_MODE) return INFINITY;
+            transferCost = destinationPenalty(ModeStates.node(forwardState), inSlot);
+        } else {
+            transferCost = ModeStates.transferCost(inSlot, outSlot);
+        }
+        if (transferCost < 0) return INFINITY;
+
+        return forwardDuration + transferCost + backwardDuration;
+    }
+
+    /**
+     * Best meeting of every forward settled node within the limit
+     *
+     * @return candidates as arrays {duration, forward state, backward state}
+     */
+    private List<long[]> collectViaCandidates(long limit) {
+        List<long[]> candidates = new ArrayList<>();
+
+        for (int i = 0; i < forwardSettledCount; i++) {
+            int forwardState = forwardSettledStates[i];
+            int nodeId = ModeStates.node(forwardState);
+
+            for (int slot = 0; slot < ModeStates.SLOT_COUNT; slot++) {
+                int backwardState = ModeStates.state(nodeId, slot);
+                long duration = meetingDuration(forwardState, backwardState);
+                if (duration <= limit) candidates.add(new long[]{duration, forwardState, backwardState});
+            }
+        }
+        return candidates;
+    }
+
+    private static long stretchedDuration(long duration) {
+        return duration == INFINITY ? INFINITY : (long) (duration * (1 + Storage.ALTERNATIVE_MAX_STRETCH));
+    }
+
+    private void update(SearchWorkspace workspace, int state, long duration, int edge, int parentState) {
+        if (edge != -1) statistics.relaxedEdges++;
+        workspace.update(state, duration, edge, parentState, statistics);
+    }
+
+    private long destinationPenalty(int nodeId, int mode) {
+        for (int i = 0; i < destinationIds.length; i++) {
+            if (destinationIds[i] == nodeId) {
+                return RoutePlanner.getDistanceDuration(CSRGraph.MODES[mode], destinationDistances[i]);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Forward parent edges are written from the meeting node backwards, backward parent edges in the path order
+     */
+    private int[] buildEdgePath(int forwardState, int backwardState) {
+        int forwardLength = 0;
+        for (int state = forwardState; forward.getEdge(state) != -1; state = forward.getParent(state)) {
+            forwardLength++;
+        }
+        int backwardLength = 0;
+        for (int state = backwardState; backward.getEdge(state) != -1; state = backward.getParent(state)) {
+            backwardLength++;
+        }
+
+        int[] path = new int[forwardLength + backwardLength];
+        int i = forwardLength;
+        for (int state = forwardState; forward.getEdge(state) != -1; state = forward.getParent(state)) {
+            path[--i] = forward.getEdge(state);
+        }
+        i = forwardLength;
+        for (int state = backwardState; backward.getEdge(state) != -1; state = backward.getParent(state)) {
+            path[i++] = backward.getEdge(state);
+        }
+        return path;
+    }
+}
@@ -0,0 +1,168 @@
+package cz.cvut.fel.intermodal_planning.planner.pathfinding;
+
+import com.umotional.basestructures.Node;
+import cz.cvut.fel.intermodal_planning.general.Storage;
+import cz.cvut.fel.intermodal_planning.graph.model.CSRGraph;
+import cz.cvut.fel.intermodal_planning.planner.RoutePlanner;
+import cz.cvut.fel.intermodal_planning.planner.model.Location;
+import cz.cvut.fel.intermodal_planning.planner.model.SearchStatistics;
+import cz.cvut.fel.intermodal_planning.planner.model.TransportMode;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.enums.PriorityQueueType;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.queue.NodePriorityQueue;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * One to many Dijkstra's algorithm over the mode-expanded graph (see ModeStates).
+ * <p>
+ * Single search from the origin computes durations to all destinations, the durations contain the same
+ * access, transfer and egress penalties as the ShortestPathAlgorithm's paths. The search stops as soon as
+ * the queue minimum reaches the durations of all destinations. Searches from several origins can run concurrently,
+ * every thread uses its own SearchWorkspace.
+ */
+public class DurationMatrixAlgorithm<TNode extends Node> {
+    private static final long INFINITY = SearchWorkspace.INFINITY;
+
+    private final CSRGraph graph;
+    private final PriorityQueueType queueType;
+
+    /**
+     * Destination candidates sorted by node id, so the destinations of the settled node are found by binary search
+     */
+    private int[] candidateNodeIds;
+    private int[] candidateDestinations;
+    private double[] candidateDistances;
+
+    public DurationMatrixAlgorithm(CSRGraph graph) {
+        this(graph, Storage.PRIORITY_QUEUE_TYPE);
+    }
+
+    public DurationMatrixAlgorithm(CSRGraph graph, PriorityQueueType queueType) {
+        this.graph = graph;
+        this.queueType = queueType;
+    }
+
+    /**
+     * Setting of the destinations, they are shared by searches from all origins
+     *
+     * @param destinations Destination Locations
+     * @param destinationNodes List of Nodes for every destination, TO which the path is searched
+     */
+    public void setDestinations(Location[] destinations, List<List<TNode>> destinationNodes) {
+        int candidateCount = destinationNodes.stream().mapToInt(List::size).sum();
+        long[] candidates = new long[candidateCount];
+
+        int idx = 0;
+        for (int j = 0; j < destinations.length; j++) {
+            for (TNode node : destinationNodes.get(j)) {
+                candidates[idx++] = ((long) node.id << 32) | j;
+            }
+        }
+        Arrays.sort(candidates);
+
+        candidateNodeIds = new int[candidateCount];
+        candidateDestinations = new int[candidateCount];
+        candidateDistances = new double[candidateCount];
+        for (int i = 0; i < candidateCount; i++) {
+            candidateNodeIds[i] = (int) (candidates[i] >>> 32);
+            candidateDestinations[i] = (int) candidates[i];
+            candidateDistances[i] = graph.distance(candidateNodeIds[i], destinations[candidateDestinations[i]]);
+        }
+    }
+
+    /**
+     * Durations from the origin to all destinations set by setDestinations()
+     *
+     * @param origin Origin Location
+     * @param originNodes List of Nodes, FROM which the path is searched
+     * @param destinationCount number of destinations
+     * @param statistics SearchStatistics, to which the work of this call is added, the algorithm is shared by the threads
+     * @param availableModes List of transport modes, which are allowed to use
+     * @return durations in seconds for every destination, -1 whether the destination is not reachable
+     */
+    public long[] planDurations(Location origin, List<TNode> originNodes, int destinationCount, SearchStatistics statistics,
+                                TransportMode... availableModes) {
+        boolean[] allowedModes = ModeStates.allowedModes(availableModes);
+
+        SearchWorkspace workspace = SearchWorkspace.acquire(graph, queueType, SearchWorkspace.FORWARD);
+        NodePriorityQueue openList = workspace.getQueue();
+
+        long[] durations = new long[destinationCount];
+        Arrays.fill(durations, INFINITY);
+        long maxDuration = destinationCount == 0 ? 0 : INFINITY;
+
+        statistics.originCandidates += originNodes.size();
+        statistics.destinationCandidates += candidateNodeIds.length;
+
+        for (TNode originNode : originNodes) {
+            long originPenalty = ModeStates.accessDuration(graph, originNode.id, origin);
+            workspace.update(ModeStates.state(originNode.id, ModeStates.NO_MODE), originPenalty, -1, -1, statistics);
+        }
+
+        // every destination is final, when the queue minimum reaches the maximal destination duration
+        while (!openList.isEmpty() && openList.peekMinKey() < maxDuration) {
+            int stateFrom = openList.pollMin();
+            workspace.close(stateFrom);
+            statistics.settledStates++;
+
+            int nodeFrom = ModeStates.node(stateFrom);
+            int prevSlot = ModeStates.slot(stateFrom);
+            long duration = workspace.getDuration(stateFrom);
+
+            if (prevSlot != ModeStates.NO_MODE && updateDestinations(nodeFrom, prevSlot, duration, durations)) {
+                maxDuration = 0;
+                for (long destinationDuration : durations) {
+                    maxDuration = Math.max(maxDuration, destinationDuration);
+                }
+            }
+
+            for (int edge = graph.getOutBegin(nodeFrom); edge < graph.getOutEnd(nodeFrom); edge++) {
+                int edgeMode = graph.getEdgeMode(edge);
+                int transferCost = ModeStates.transferCost(prevSlot, edgeMode);
+                if (!allowedModes[edgeMode] || transferCost < 0) continue;
+
+                int stateTo = ModeStates.state(graph.getEdgeTarget(edge), edgeMode);
+                if (workspace.isClosed(stateTo)) continue;
+
+                statistics.relaxedEdges++;
+                workspace.update(stateTo, duration + graph.getEdgeDuration(edge) + transferCost, -1, -1, statistics);
+            }
+        }
+
+        for (int j = 0; j < destinationCount; j++) {
+            if (durations[j] == INFINITY) durations[j] = -1;
+        }
+        return durations;
+    }
+
+    /**
+     * Improvement of the destinations, which have the node among their candidates
+     *
+     * @return true whether any destination was improved
+     */
+    private boolean updateDestinations(int nodeId, int lastMode, long duration, long[] durations) {
+        boolean improved = false;
+        TransportMode mode = CSRGraph.MODES[lastMode];
+
+        for (int i = firstCandidate(nodeId); i < candidateNodeIds.length && candidateNodeIds[i] == nodeId; i++) {
+            long destinationDuration = duration + RoutePlanner.getDistanceDuration(mode, candidateDistances[i]);
+            if (destinationDuration < durations[candidateDestinations[i]]) {
+                durations[candidateDestinations[i]] = destinationDuration;
+                improved = true;
+            }
+        }
+        return improved;
+    }
+
+    private int firstCandidate(int nodeId) {
+        int low = 0;
+        int high = candidateNodeIds.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (candidateNodeIds[mid] < nodeId) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+}
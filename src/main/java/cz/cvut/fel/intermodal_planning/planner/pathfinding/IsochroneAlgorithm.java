@@ -0,0 +1,94 @@
+package cz.cvut.fel.intermodal_planning.planner.pathfinding;
+
+import com.umotional.basestructures.Node;
+import cz.cvut.fel.intermodal_planning.general.Storage;
+import cz.cvut.fel.intermodal_planning.graph.model.CSRGraph;
+import cz.cvut.fel.intermodal_planning.planner.model.Location;
+import cz.cvut.fel.intermodal_planning.planner.model.SearchStatistics;
+import cz.cvut.fel.intermodal_planning.planner.model.TransportMode;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.enums.PriorityQueueType;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.queue.NodePriorityQueue;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * One to all Dijkstra's algorithm over the mode-expanded graph (see ModeStates) bounded by the time budget
+ */
+public class IsochroneAlgorithm<TNode extends Node> {
+    private final CSRGraph graph;
+    private final PriorityQueueType queueType;
+
+    private SearchStatistics statistics = new SearchStatistics();
+
+    public IsochroneAlgorithm(CSRGraph graph) {
+        this(graph, Storage.PRIORITY_QUEUE_TYPE);
+    }
+
+    public IsochroneAlgorithm(CSRGraph graph, PriorityQueueType queueType) {
+        this.graph = graph;
+        this.queueType = queueType;
+    }
+
+    /**
+     * Durations of all nodes reachable within the budget
+     *
+     * @param origin Origin Location
+     * @param originNodes List of Nodes, FROM which the search starts
+     * @param budget maximal duration in seconds including the walking access to the origin nodes
+     * @param availableModes List of transport modes, which are allowed to use
+     * @return minimal duration over all modes for every node id, -1 whether the node is not reachable within the budget
+     */
+    public long[] planNodeDurations(Location origin, List<TNode> originNodes, long budget, TransportMode... availableModes) {
+        boolean[] allowedModes = ModeStates.allowedModes(availableModes);
+
+        SearchWorkspace workspace = SearchWorkspace.acquire(graph, queueType, SearchWorkspace.FORWARD);
+        NodePriorityQueue openList = workspace.getQueue();
+
+        long[] nodeDurations = new long[graph.getNodeCount()];
+        Arrays.fill(nodeDurations, -1);
+        statistics = new SearchStatistics();
+        statistics.originCandidates = originNodes.size();
+
+        for (TNode originNode : originNodes) {
+            long originPenalty = ModeStates.accessDuration(graph, originNode.id, origin);
+            workspace.update(ModeStates.state(originNode.id, ModeStates.NO_MODE), originPenalty, -1, -1, statistics);
+        }
+
+        while (!openList.isEmpty() && openList.peekMinKey() <= budget) {
+            int stateFrom = openList.pollMin();
+            workspace.close(stateFrom);
+            statistics.settledStates++;
+
+            int nodeFrom = ModeStates.node(stateFrom);
+            int prevSlot = ModeStates.slot(stateFrom);
+            long duration = workspace.getDuration(stateFrom);
+
+            // states are settled in order of duration, so the first state of the node has the minimal one
+            if (nodeDurations[nodeFrom] == -1) nodeDurations[nodeFrom] = duration;
+
+            for (int edge = graph.getOutBegin(nodeFrom); edge < graph.getOutEnd(nodeFrom); edge++) {
+                int edgeMode = graph.getEdgeMode(edge);
+                int transferCost = ModeStates.transferCost(prevSlot, edgeMode);
+                if (!allowedModes[edgeMode] || transferCost < 0) continue;
+
+                int stateTo = ModeStates.state(graph.getEdgeTarget(edge), edgeMode);
+                if (workspace.isClosed(stateTo)) continue;
+
+                statistics.relaxedEdges++;
+                workspace.update(stateTo, duration + graph.getEdgeDuration(edge) + transferCost, -1, -1, statistics);
+            }
+        }
+
+        return nodeDurations;
+    }
+
+    /**
+     * Search space counters of the last planNodeDurations() call
+     *
+     * @return SearchStatistics of the search, phase times are filled only by the caller
+     */
+    public SearchStatistics getStatistics() {
+        return statistics;
+    }
+}
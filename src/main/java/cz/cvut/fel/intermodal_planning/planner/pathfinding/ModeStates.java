@@ -0,0 +1,110 @@
+package cz.cvut.fel.intermodal_planning.planner.pathfinding;
+
+import cz.cvut.fel.intermodal_planning.graph.model.CSRGraph;
+import cz.cvut.fel.intermodal_planning.planner.RoutePlanner;
+import cz.cvut.fel.intermodal_planning.planner.model.Location;
+import cz.cvut.fel.intermodal_planning.planner.model.TransportMode;
+
+/**
+ * Search states of the mode-expanded graph.
+ * <p>
+ * State is a pair (node, mode slot) encoded as {@code nodeId * SLOT_COUNT + slot}. In forward searches the slot
+ * is the mode of the edge the node was reached by, in backward searches it is the mode of the edge leaving the node.
+ * Slot NO_MODE marks the origin (forward) or the end of the path (backward).
+ */
+public final class ModeStates {
+    public static final int NO_MODE = CSRGraph.MODE_COUNT;
+    public static final int SLOT_COUNT = CSRGraph.MODE_COUNT + 1;
+
+    /**
+     * Transfer penalty for [previous slot][next mode], -1 when the transfer is not possible
+     */
+    private static final int[][] TRANSFER_COST = createTransferCostTable();
+
+    private ModeStates() {
+    }
+
+    public static int state(int nodeId, int slot) {
+        return nodeId * SLOT_COUNT + slot;
+    }
+
+    public static int node(int state) {
+        return state / SLOT_COUNT;
+    }
+
+    public static int slot(int state) {
+        return state % SLOT_COUNT;
+    }
+
+    public static int stateCount(CSRGraph graph) {
+        return graph.getNodeCount() * SLOT_COUNT;
+    }
+
+    /**
+     * Cost of continuing by the edge of given mode
+     *
+     * @param prevSlot mode of the previous edge or NO_MODE
+     * @param mode mode ordinal of the next edge
+     * @return penalty in seconds or -1 whether the transfer is not possible
+     */
+    public static int transferCost(int prevSlot, int mode) {
+        return TRANSFER_COST[prevSlot][mode];
+    }
+
+    /**
+     * Flags of the allowed modes indexed by the mode ordinal
+     *
+     * @param availableModes List of transport modes, which are allowed to use
+     * @return allowed mode flags
+     */
+    public static boolean[] allowedModes(TransportMode... availableModes) {
+        boolean[] allowedModes = new boolean[CSRGraph.MODE_COUNT];
+        for (TransportMode mode : availableModes) {
+            allowedModes[mode.ordinal()] = true;
+        }
+        return allowedModes;
+    }
+
+    /**
+     * Walking access from the origin location to the origin node, duration of the initial state of the node
+     *
+     * @param graph CSR graph, which is searched
+     * @param nodeId id of the origin node
+     * @param origin Origin Location
+     * @return access duration in seconds
+     */
+    public static long accessDuration(CSRGraph graph, int nodeId, Location origin) {
+        return RoutePlanner.getDistanceDuration(TransportMode.WALK, graph.distance(nodeId, origin));
+    }
+
+    /**
+     * Position of the node among the candidate nodes
+     *
+     * @param nodeIds ids of the candidate nodes
+     * @param nodeId id of the node
+     * @return index of the node or -1 whether it is not a candidate
+     */
+    public static int indexOf(int[] nodeIds, int nodeId) {
+        for (int i = 0; i < nodeIds.length; i++) {
+            if (nodeIds[i] == nodeId) return i;
+        }
+        return -1;
+    }
+
+    private static int[][] createTransferCostTable() {
+        TransportMode[] modes = TransportMode.values();
+        int[][] table = new int[SLOT_COUNT][CSRGraph.MODE_COUNT];
+
+        for (int prevSlot = 0; prevSlot < SLOT_COUNT; prevSlot++) {
+            TransportMode prevMode = prevSlot == NO_MODE ? null : modes[prevSlot];
+            for (TransportMode mode : modes) {
+                if (!RoutePlanner.isTransferPossible(prevMode, mode)) {
+                    table[prevSlot][mode.ordinal()] = -1;
+                } else {
+                    table[prevSlot][mode.ordinal()] = (prevMode == null || prevMode == mode) ? 0 : RoutePlanner.getTransferPenalty(prevMode);
+                }
+            }
+        }
+        return table;
+    }
+}
@@ -0,0 +1,266 @@
+package cz.cvut.fel.intermodal_planning.planner.pathfinding;
+
+import com.umotional.basestructures.Node;
+import cz.cvut.fel.intermodal_planning.general.Storage;
+import cz.cvut.fel.intermodal_planning.graph.model.CSRGraph;
+import cz.cvut.fel.intermodal_planning.planner.RoutePlanner;
+import cz.cvut.fel.intermodal_planning.planner.model.Location;
+import cz.cvut.fel.intermodal_planning.planner.model.SearchStatistics;
+import cz.cvut.fel.intermodal_planning.planner.model.TransportMode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Multi-criteria label-setting search over the mode-expanded graph (see ModeStates) minimizing duration
+ * and number of transfers, where transfer is a change of mode charged by RoutePlanner.getTransferPenalty.
+ * <p>
+ * Labels are stored in a primitive pool and settled in order of duration, so a settled label of a state is
+ * non-dominated whether it has fewer transfers than all labels of the state settled before. Bags are bounded
+ * by PARETO_MAX_TRANSFERS and labels dominated by the paths already found to the destination are pruned.
+ */
+public class ParetoAlgorithm<TNode extends Node> {
+    private static final long INFINITY = SearchWorkspace.INFINITY;
+    private static final int INITIAL_POOL_SIZE = 1024;
+
+    private final CSRGraph graph;
+    private final int maxTransfers;
+
+    private SearchWorkspace workspace;
+
+    private int labelCount;
+    private int[] labelStates;
+    private int[] labelTransfers;
+    private long[] labelDurations;
+    private int[] labelParents;
+    private int[] labelEdges;
+
+    /**
+     * Binary heap of label indices keyed by the label duration, labels are never decreased, only inserted
+     */
+    private int heapSize;
+    private int[] heapLabels;
+
+    /**
+     * Best destination label for every number of transfers
+     */
+    private long[] destinationDurations;
+    private int[] destinationLabels;
+
+    private SearchStatistics statistics = new SearchStatistics();
+
+    public ParetoAlgorithm(CSRGraph graph) {
+        this(graph, Storage.PARETO_MAX_TRANSFERS);
+    }
+
+    public ParetoAlgorithm(CSRGraph graph, int maxTransfers) {
+        this.graph = graph;
+        this.maxTransfers = maxTransfers;
+
+        labelStates = new int[INITIAL_POOL_SIZE];
+        labelTransfers = new int[INITIAL_POOL_SIZE];
+        labelDurations = new long[INITIAL_POOL_SIZE];
+        labelParents = new int[INITIAL_POOL_SIZE];
+        labelEdges = new int[INITIAL_POOL_SIZE];
+        heapLabels = new int[INITIAL_POOL_SIZE];
+    }
+
+    /**
+     * Pareto front of paths - Many to many
+     *
+     * @param origin Origin Location
+     * @param destination Destination Location
+     * @param originNodes List of Nodes, FROM which the path is searched
+     * @param destinationNodes List of Nodes, TO which the path is searched
+     * @param availableModes List of transport modes, which are allowed to use
+     * @return CSRGraph edge indices of the Pareto optimal paths ordered by number of transfers (and decreasing duration)
+     */
+    public List<int[]> plan(Location origin, Location destination, List<TNode> originNodes,
+                                      List<TNode> destinationNodes, TransportMode... availableModes) {
+        boolean[] allowedModes = ModeStates.allowedModes(availableModes);
+
+        int[] destinationIds = destinationNodes.stream().mapToInt(node -> node.id).toArray();
+        double[] destinationDistances = new double[destinationIds.length];
+        for (int i = 0; i < destinationIds.length; i++) {
+            destinationDistances[i] = graph.distance(destinationIds[i], destination);
+        }
+
+        // workspace label of the state holds the minimal number of transfers of its settled labels, its queue is not used,
+        // so the workspace of the other searches of the thread is acquired and no other queue is allocated
+        workspace = SearchWorkspace.acquire(graph, Storage.PRIORITY_QUEUE_TYPE, SearchWorkspace.FORWARD);
+        labelCount = 0;
+        heapSize = 0;
+        statistics = new SearchStatistics();
+        statistics.originCandidates = originNodes.size();
+        statistics.destinationCandidates = destinationNodes.size();
+        destinationDurations = new long[maxTransfers + 1];
+        destinationLabels = new int[maxTransfers + 1];
+        Arrays.fill(destinationDurations, INFINITY);
+        Arrays.fill(destinationLabels, -1);
+
+        for (TNode originNode : originNodes) {
+            long originPenalty = ModeStates.accessDuration(graph, originNode.id, origin);
+            push(ModeStates.state(originNode.id, ModeStates.NO_MODE), 0, originPenalty, -1, -1);
+        }
+
+        // every further label is dominated by the direct destination label
+        while (heapSize > 0 && labelDurations[heapLabels[0]] < destinationDurations[0]) {
+            int label = poll();
+            int state = labelStates[label];
+            int transfers = labelTransfers[label];
+            long duration = labelDurations[label];
+
+            if (isDominated(state, transfers) || isDominatedByDestination(transfers, duration)) continue;
+            workspace.setLabel(state, duration, -1, transfers);
+            statistics.settledStates++;
+
+            int nodeFrom = ModeStates.node(state);
+            int prevSlot = ModeStates.slot(state);
+
+            int destinationIdx = ModeStates.indexOf(destinationIds, nodeFrom);
+            if (destinationIdx != -1 && prevSlot != ModeStates.NO_MODE) {
+                long destinationDuration = duration
+                        + RoutePlanner.getDistanceDuration(CSRGraph.MODES[prevSlot], destinationDistances[destinationIdx]);
+                if (destinationDuration < destinationDurations[transfers]) {
+                    destinationDurations[transfers] = destinationDuration;
+                    destinationLabels[transfers] = label;
+                }
+            }
+
+            for (int edge = graph.getOutBegin(nodeFrom); edge < graph.getOutEnd(nodeFrom); edge++) {
+                int edgeMode = graph.getEdgeMode(edge);
+                int transferCost = ModeStates.transferCost(prevSlot, edgeMode);
+                if (!allowedModes[edgeMode] || transferCost < 0) continue;
+
+                statistics.relaxedEdges++;
+                int transfersTo = (prevSlot == ModeStates.NO_MODE || prevSlot == edgeMode) ? transfers : transfers + 1;
+                if (transfersTo > maxTransfers) continue;
+
+                int stateTo = ModeStates.state(graph.getEdgeTarget(edge), edgeMode);
+                long durationTo = duration + graph.getEdgeDuration(edge) + transferCost;
+                if (isDominated(stateTo, transfersTo) || isDominatedByDestination(transfersTo, durationTo)) continue;
+
+                push(stateTo, transfersTo, durationTo, label, edge);
+            }
+        }
+
+        long reconstructStart = System.nanoTime();
+        List<int[]> paths = buildParetoFront();
+        statistics.reconstructNanos = System.nanoTime() - reconstructStart;
+        return paths;
+    }
+
+    /**
+     * Number of labels settled by the last plan() call
+     *
+     * @return settled label count
+     */
+    public int getSettledNodeCount() {
+        return (int) statistics.settledStates;
+    }
+
+    /**
+     * Search space counters of the last plan() call, settled states are the settled labels
+     *
+     * @return SearchStatistics of the search, phase times are filled only by the caller
+     */
+    public SearchStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Labels are settled in order of duration, so the label is dominated by any settled label of the state
+     * with at most the same number of transfers
+     */
+    private boolean isDominated(int state, int transfers) {
+        return workspace.getDuration(state) != INFINITY && workspace.getParent(state) <= transfers;
+    }
+
+    private boolean isDominatedByDestination(int transfers, long duration) {
+        for (int k = 0; k <= transfers; k++) {
+            if (destinationDurations[k] <= duration) return true;
+        }
+        return false;
+    }
+
+    private List<int[]> buildParetoFront() {
+        List<int[]> paths = new ArrayList<>();
+        long bestDuration = INFINITY;
+
+        for (int transfers = 0; transfers <= maxTransfers; transfers++) {
+            if (destinationDurations[transfers] >= bestDuration) continue;
+            bestDuration = destinationDurations[transfers];
+            paths.add(findEdgePath(destinationLabels[transfers]));
+        }
+        return paths;
+    }
+
+    /**
+     * Walk of the parent labels, origin labels are the only ones without an edge
+     */
+    private int[] findEdgePath(int label) {
+        int length = 0;
+        for (int tmpLabel = label; labelEdges[tmpLabel] != -1; tmpLabel = labelParents[tmpLabel]) {
+            length++;
+        }
+
+        int[] path = new int[length];
+        int tmpLabel = label;
+        for (int i = length - 1; i >= 0; i--) {
+            path[i] = labelEdges[tmpLabel];
+            tmpLabel = labelParents[tmpLabel];
+        }
+        return path;
+    }
+
+    private void push(int state, int transfers, long duration, int parent, int edge) {
+        if (labelCount == labelStates.length) {
+            int capacity = labelCount * 2;
+            labelStates = Arrays.copyOf(labelStates, capacity);
+            labelTransfers = Arrays.copyOf(labelTransfers, capacity);
+            labelDurations = Arrays.copyOf(labelDurations, capacity);
+            labelParents = Arrays.copyOf(labelParents, capacity);
+            labelEdges = Arrays.copyOf(labelEdges, capacity);
+            heapLabels = Arrays.copyOf(heapLabels, capacity);
+        }
+
+        int label = labelCount++;
+        statistics.queuePushes++;
+        labelStates[label] = state;
+        labelTransfers[label] = transfers;
+        labelDurations[label] = duration;
+        labelParents[label] = parent;
+        labelEdges[label] = edge;
+
+        // sift up
+        int pos = heapSize++;
+        while (pos > 0) {
+            int parentPos = (pos - 1) >>> 1;
+            if (labelDurations[heapLabels[parentPos]] <= duration) break;
+            heapLabels[pos] = heapLabels[parentPos];
+            pos = parentPos;
+        }
+        heapLabels[pos] = label;
+    }
+
+    private int poll() {
+        int min = heapLabels[0];
+        int last = heapLabels[--heapSize];
+        long lastDuration = labelDurations[last];
+
+        // sift down
+        int pos = 0;
+        while (true) {
+            int child = 2 * pos + 1;
+            if (child >= heapSize) break;
+            if (child + 1 < heapSize && labelDurations[heapLabels[child + 1]] < labelDurations[heapLabels[child]]) child++;
+            if (labelDurations[heapLabels[child]] >= lastDuration) break;
+            heapLabels[pos] = heapLabels[child];
+            pos = child;
+        }
+        if (heapSize > 0) heapLabels[pos] = last;
+
+        return min;
+    }
+}
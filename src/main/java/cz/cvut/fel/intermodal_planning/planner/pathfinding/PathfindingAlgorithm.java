@@ -0,0 +1,55 @@
+package cz.cvut.fel.intermodal_planning.planner.pathfinding;
+
+import com.umotional.basestructures.Node;
+import cz.cvut.fel.intermodal_planning.graph.model.GraphEdge;
+import cz.cvut.fel.intermodal_planning.planner.model.Location;
+import cz.cvut.fel.intermodal_planning.planner.model.SearchStatistics;
+import cz.cvut.fel.intermodal_planning.planner.model.TransportMode;
+
+import java.util.List;
+
+/**
+ * Many to many pathfinding over the planner's graph
+ */
+public interface PathfindingAlgorithm<TNode extends Node> {
+
+    /**
+     * Finding path in model - Many to many
+     *
+     * @param origin Origin Location
+     * @param destination Destination Location
+     * @param originNodes List of Nodes, FROM which the path is searched
+     * @param destinationNodes List of Nodes, TO which the path is searched
+     * @param availableModes List of transport modes, which are allowed to use
+     * @return Edge sequence representing the model path or null whether the path does not exist
+     */
+    List<GraphEdge> plan(Location origin, Location destination, List<TNode> originNodes, List<TNode> destinationNodes,
+                         TransportMode... availableModes);
+
+    /**
+     * Finding path in model - Many to many, the path is not mapped to the Graph's edges
+     *
+     * @param origin Origin Location
+     * @param destination Destination Location
+     * @param originNodes List of Nodes, FROM which the path is searched
+     * @param destinationNodes List of Nodes, TO which the path is searched
+     * @param availableModes List of transport modes, which are allowed to use
+     * @return CSRGraph edge indices of the path or null whether the path does not exist
+     */
+    int[] planEdgePath(Location origin, Location destination, List<TNode> originNodes, List<TNode> destinationNodes,
+                       TransportMode... availableModes);
+
+    /**
+     * Number of search states settled by the last plan() call
+     *
+     * @return settled count
+     */
+    int getSettledNodeCount();
+
+    /**
+     * Search space counters of the last plan() call
+     *
+     * @return SearchStatistics of the search, phase times are filled only by the caller
+     */
+    SearchStatistics getStatistics();
+}
@@ -0,0 +1,72 @@
+package cz.cvut.fel.intermodal_planning.planner.pathfinding;
+
+import cz.cvut.fel.intermodal_planning.graph.model.CSRGraph;
+import cz.cvut.fel.intermodal_planning.planner.model.TransportMode;
+
+/**
+ * Dense weights of the CSRGraph edges precomputed for one named cost profile (RoutingMetric),
+ * so the search reads the weight of an edge and the transfer cost from arrays instead of evaluating the metric.
+ */
+public final class ProfileWeights {
+    private final RoutingMetric metric;
+    private final int[] edgeWeights;
+
+    /**
+     * Transfer cost for [previous slot * MODE_COUNT + next mode], -1 when the transfer is not possible
+     */
+    private final int[] transferCosts;
+
+    private ProfileWeights(RoutingMetric metric, int[] edgeWeights, int[] transferCosts) {
+        this.metric = metric;
+        this.edgeWeights = edgeWeights;
+        this.transferCosts = transferCosts;
+    }
+
+    /**
+     * Precomputation of the weights
+     *
+     * @param graph CSR graph
+     * @param metric RoutingMetric of the profile
+     * @return ProfileWeights instance
+     */
+    public static ProfileWeights create(CSRGraph graph, RoutingMetric metric) {
+        int[] edgeWeights = new int[graph.getEdgeCount()];
+        for (int e = 0; e < edgeWeights.length; e++) {
+            edgeWeights[e] = metric.getEdgeDuration(graph, e);
+        }
+
+        int[] transferCosts = new int[ModeStates.SLOT_COUNT * CSRGraph.MODE_COUNT];
+        for (int prevSlot = 0; prevSlot < ModeStates.SLOT_COUNT; prevSlot++) {
+            for (int mode = 0; mode < CSRGraph.MODE_COUNT; mode++) {
+                transferCosts[prevSlot * CSRGraph.MODE_COUNT + mode] = metric.getTransferCost(prevSlot, mode);
+            }
+        }
+        return new ProfileWeights(metric, edgeWeights, transferCosts);
+    }
+
+    public RoutingMetric getMetric() {
+        return metric;
+    }
+
+    public int getEdgeWeight(int edgeIdx) {
+        return edgeWeights[edgeIdx];
+    }
+
+    /**
+     * @param prevSlot mode of the previous edge or NO_MODE
+     * @param mode mode ordinal of the next edge
+     * @return penalty in seconds or -1 whether the transfer is not possible
+     */
+    public int getTransferCost(int prevSlot, int mode) {
+        return transferCosts[prevSlot * CSRGraph.MODE_COUNT + mode];
+    }
+
+    /**
+     * @param mode Transport Mode
+     * @param distance Distance in Meters
+     * @return access or egress duration in seconds
+     */
+    public long getDistanceDuration(TransportMode mode, double distance) {
+        return metric.getDistanceDuration(mode, distance);
+    }
+}
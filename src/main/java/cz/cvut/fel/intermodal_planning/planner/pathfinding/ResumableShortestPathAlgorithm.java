@@ -0,0 +1,82 @@
+package cz.cvut.fel.intermodal_planning.planner.pathfinding;
+
+import com.umotional.basestructures.Node;
+import cz.cvut.fel.intermodal_planning.graph.model.CSRGraph;
+import cz.cvut.fel.intermodal_planning.graph.model.GraphEdge;
+import cz.cvut.fel.intermodal_planning.planner.model.Location;
+import cz.cvut.fel.intermodal_planning.planner.model.SearchStatistics;
+import cz.cvut.fel.intermodal_planning.planner.model.TransportMode;
+
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * Dijkstra's algorithm over the mode-expanded graph, which resumes the cached SearchTree of the same origin states
+ * instead of starting a new search, so queries sharing the origin settle only the states not settled before.
+ */
+public class ResumableShortestPathAlgorithm<TNode extends Node> implements PathfindingAlgorithm<TNode> {
+    private final SearchTreeCache treeCache;
+    private final CSRGraph graph;
+
+    private SearchStatistics statistics = new SearchStatistics();
+
+    public ResumableShortestPathAlgorithm(SearchTreeCache treeCache) {
+        this.treeCache = treeCache;
+        this.graph = treeCache.getGraph();
+    }
+
+    @Override
+    public List<GraphEdge> plan(Location origin, Location destination, List<TNode> originNodes, List<TNode> destinationNodes,
+                                TransportMode... availableModes) {
+        return graph.getGraphEdges(planEdgePath(origin, destination, originNodes, destinationNodes, availableModes));
+    }
+
+    @Override
+    public int[] planEdgePath(Location origin, Location destination, List<TNode> originNodes, List<TNode> destinationNodes,
+                              TransportMode... availableModes) {
+        statistics = new SearchStatistics();
+        statistics.originCandidates = originNodes.size();
+        statistics.destinationCandidates = destinationNodes.size();
+
+        boolean[] allowedModes = ModeStates.allowedModes(availableModes);
+
+        // origin states ordered by node id, so the key of the tree does not depend on the order of the candidates
+        TreeMap<Integer, Long> originPenalties = new TreeMap<>();
+        for (TNode originNode : originNodes) {
+            long originPenalty = ModeStates.accessDuration(graph, originNode.id, origin);
+            originPenalties.merge(originNode.id, originPenalty, Math::min);
+        }
+        int[] originIds = originPenalties.keySet().stream().mapToInt(Integer::intValue).toArray();
+        long[] penalties = originPenalties.values().stream().mapToLong(Long::longValue).toArray();
+
+        int[] destinationIds = destinationNodes.stream().mapToInt(node -> node.id).toArray();
+        double[] destinationDistances = new double[destinationIds.length];
+        for (int i = 0; i < destinationIds.length; i++) {
+            destinationDistances[i] = graph.distance(destinationIds[i], destination);
+        }
+
+        SearchTree tree = treeCache.getTree(originIds, penalties, allowedModes);
+        int destinationState = tree.search(destinationIds, destinationDistances, statistics);
+        if (destinationState == -1) return null;
+
+        long reconstructStart = System.nanoTime();
+        int[] path = tree.findEdgePath(destinationState);
+        statistics.reconstructNanos = System.nanoTime() - reconstructStart;
+        return path;
+    }
+
+    /**
+     * Number of states settled by the last plan() call, states settled by the previous queries are not included
+     *
+     * @return settled state count
+     */
+    @Override
+    public int getSettledNodeCount() {
+        return (int) statistics.settledStates;
+    }
+
+    @Override
+    public SearchStatistics getStatistics() {
+        return statistics;
+    }
+}
@@ -0,0 +1,141 @@
+package cz.cvut.fel.intermodal_planning.planner.pathfinding;
+
+import cz.cvut.fel.intermodal_planning.graph.model.CSRGraph;
+import cz.cvut.fel.intermodal_planning.planner.RoutePlanner;
+import cz.cvut.fel.intermodal_planning.planner.model.TransportMode;
+
+import java.util.Arrays;
+
+/**
+ * Weights of the mode-expanded graph (see ModeStates) used instead of the fixed speeds and transfer penalties.
+ * <p>
+ * Duration of an edge, access and egress of a mode is multiplied by the mode's duration factor,
+ * transfer penalty is given for every pair (previous slot, next mode), -1 when the transfer is not possible.
+ * The default metric equals the weights used by RoutePlanner.
+ * <p>
+ * The metric is immutable, every change creates a new metric, so the weights customized for it stay valid.
+ * Metrics are equal whether they have the same name and weights.
+ */
+public final class RoutingMetric {
+    public final String name;
+    private final double[] durationFactors;
+    private final int[][] transferPenalties;
+
+    public RoutingMetric(String name) {
+        this.name = name;
+
+        durationFactors = new double[CSRGraph.MODE_COUNT];
+        transferPenalties = new int[ModeStates.SLOT_COUNT][CSRGraph.MODE_COUNT];
+        for (int mode = 0; mode < CSRGraph.MODE_COUNT; mode++) {
+            durationFactors[mode] = 1;
+            for (int prevSlot = 0; prevSlot < ModeStates.SLOT_COUNT; prevSlot++) {
+                transferPenalties[prevSlot][mode] = ModeStates.transferCost(prevSlot, mode);
+            }
+        }
+    }
+
+    private RoutingMetric(RoutingMetric metric) {
+        name = metric.name;
+        durationFactors = metric.durationFactors.clone();
+        transferPenalties = new int[ModeStates.SLOT_COUNT][];
+        for (int prevSlot = 0; prevSlot < ModeStates.SLOT_COUNT; prevSlot++) {
+            transferPenalties[prevSlot] = metric.transferPenalties[prevSlot].clone();
+        }
+    }
+
+    /**
+     * @param mode Transport mode
+     * @param factor multiplier of durations of the mode, e.g. 2 for half the speed
+     * @return copy of this metric with the changed factor
+     */
+    public RoutingMetric withDurationFactor(TransportMode mode, double factor) {
+        RoutingMetric metric = new RoutingMetric(this);
+        metric.durationFactors[mode.ordinal()] = factor;
+        return metric;
+    }
+
+    /**
+     * @param prevMode mode of the previous edge, null for the first edge
+     * @param mode mode of the next edge
+     * @param penalty penalty in seconds, -1 whether the transfer is not possible
+     * @return copy of this metric with the changed penalty
+     */
+    public RoutingMetric withTransferPenalty(TransportMode prevMode, TransportMode mode, int penalty) {
+        RoutingMetric metric = new RoutingMetric(this);
+        metric.transferPenalties[prevMode == null ? ModeStates.NO_MODE : prevMode.ordinal()][mode.ordinal()] = penalty;
+        return metric;
+    }
+
+    /**
+     * Forbidding the mode, no path can continue by its edges
+     *
+     * @param mode Transport mode
+     * @return copy of this metric without the mode
+     */
+    public RoutingMetric withDisabledMode(TransportMode mode) {
+        RoutingMetric metric = new RoutingMetric(this);
+        for (int prevSlot = 0; prevSlot < ModeStates.SLOT_COUNT; prevSlot++) {
+            metric.transferPenalties[prevSlot][mode.ordinal()] = -1;
+        }
+        return metric;
+    }
+
+    /**
+     * Check whether the durations of the metric are at least the default ones, so the lower bounds
+     * of the heuristics computed for the default weights stay admissible
+     *
+     * @return true whether no duration factor is lower than 1 and no transfer penalty is negative except forbidden ones
+     */
+    public boolean isBoundedByDefault() {
+        for (int mode = 0; mode < CSRGraph.MODE_COUNT; mode++) {
+            if (durationFactors[mode] < 1) return false;
+            for (int prevSlot = 0; prevSlot < ModeStates.SLOT_COUNT; prevSlot++) {
+                int penalty = transferPenalties[prevSlot][mode];
+                if (penalty != -1 && penalty < ModeStates.transferCost(prevSlot, mode)) return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param graph CSR graph
+     * @param edgeIdx Edge index
+     * @return duration of the edge in seconds
+     */
+    public int getEdgeDuration(CSRGraph graph, int edgeIdx) {
+        return (int) Math.min(Math.round(graph.getEdgeDuration(edgeIdx) * durationFactors[graph.getEdgeMode(edgeIdx)]),
+                Integer.MAX_VALUE / 4);
+    }
+
+    /**
+     * @param prevSlot mode of the previous edge or NO_MODE
+     * @param mode mode ordinal of the next edge
+     * @return penalty in seconds or -1 whether the transfer is not possible
+     */
+    public int getTransferCost(int prevSlot, int mode) {
+        return transferPenalties[prevSlot][mode];
+    }
+
+    /**
+     * @param mode Transport Mode
+     * @param distance Distance in Meters
+     * @return access or egress duration in seconds
+     */
+    public long getDistanceDuration(TransportMode mode, double distance) {
+        return Math.round(RoutePlanner.getDistanceDuration(mode, distance) * durationFactors[mode.ordinal()]);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        RoutingMetric metric = (RoutingMetric) o;
+        return name.equals(metric.name) && Arrays.equals(durationFactors, metric.durationFactors)
+                && Arrays.deepEquals(transferPenalties, metric.transferPenalties);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * name.hashCode() + Arrays.hashCode(durationFactors)) + Arrays.deepHashCode(transferPenalties);
+    }
+}
@@ -0,0 +1,168 @@
+package cz.cvut.fel.intermodal_planning.planner.pathfinding;
+
+import cz.cvut.fel.intermodal_planning.graph.model.CSRGraph;
+import cz.cvut.fel.intermodal_planning.planner.RoutePlanner;
+import cz.cvut.fel.intermodal_planning.planner.model.SearchStatistics;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.enums.PriorityQueueType;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.queue.NodePriorityQueue;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Dijkstra's search tree of the mode-expanded graph (see ModeStates) from fixed origin states, which can be resumed
+ * for another destination.
+ * <p>
+ * Keys of the open states do not depend on the destination, there is no heuristic and no pruning, so the settled
+ * labels stay final and the search continues with its open list where the previous query stopped.
+ * The tree owns its labels and its queue, they are not shared with the SearchWorkspace of the thread.
+ * Memory of a tree is proportional to the number of states of the graph.
+ */
+public class SearchTree {
+    private static final long INFINITY = SearchWorkspace.INFINITY;
+
+    private final CSRGraph graph;
+    private final boolean[] allowedModes;
+    private final NodePriorityQueue openList;
+
+    private final long[] durations;
+    private final int[] edges;
+    private final byte[] prevSlots;
+    private final BitSet closed;
+
+    /**
+     * Creation of the tree with the origin states in the open list
+     *
+     * @param graph CSR graph
+     * @param queueType type of the queue
+     * @param originIds ids of the origin nodes
+     * @param originPenalties access penalties of the origin nodes
+     * @param allowedModes allowed modes indexed by their ordinal
+     */
+    public SearchTree(CSRGraph graph, PriorityQueueType queueType, int[] originIds, long[] originPenalties,
+                      boolean[] allowedModes) {
+        int stateCount = ModeStates.stateCount(graph);
+
+        this.graph = graph;
+        this.allowedModes = allowedModes.clone();
+        openList = queueType.create(stateCount);
+        durations = new long[stateCount];
+        edges = new int[stateCount];
+        prevSlots = new byte[stateCount];
+        closed = new BitSet(stateCount);
+
+        Arrays.fill(durations, INFINITY);
+        for (int i = 0; i < originIds.length; i++) {
+            update(ModeStates.state(originIds[i], ModeStates.NO_MODE), originPenalties[i], -1, ModeStates.NO_MODE, null);
+        }
+    }
+
+    /**
+     * Best destination state, the tree is grown only until the state is proven optimal
+     *
+     * @param destinationIds ids of the destination nodes
+     * @param destinationDistances distances of the destination nodes to the destination
+     * @param statistics SearchStatistics, to which the work of this call is added
+     * @return settled state with the shortest path to the destination including the egress or -1 whether there is none
+     */
+    public synchronized int search(int[] destinationIds, double[] destinationDistances, SearchStatistics statistics) {
+        long minEgress = INFINITY;
+        long bestDuration = INFINITY;
+        int bestState = -1;
+
+        // destination states settled by the previous queries
+        for (int i = 0; i < destinationIds.length; i++) {
+            for (int mode = 0; mode < CSRGraph.MODE_COUNT; mode++) {
+                if (!allowedModes[mode]) continue;
+
+                long egress = RoutePlanner.getDistanceDuration(CSRGraph.MODES[mode], destinationDistances[i]);
+                minEgress = Math.min(minEgress, egress);
+
+                int state = ModeStates.state(destinationIds[i], mode);
+                if (closed.get(state) && durations[state] + egress < bestDuration) {
+                    bestDuration = durations[state] + egress;
+                    bestState = state;
+                }
+            }
+        }
+
+        while (!openList.isEmpty() && openList.peekMinKey() + minEgress < bestDuration) {
+            int stateFrom = openList.pollMin();
+            closed.set(stateFrom);
+            statistics.settledStates++;
+
+            int nodeFrom = ModeStates.node(stateFrom);
+            int prevSlot = ModeStates.slot(stateFrom);
+            long duration = durations[stateFrom];
+
+            if (prevSlot != ModeStates.NO_MODE) {
+                for (int i = 0; i < destinationIds.length; i++) {
+                    if (destinationIds[i] != nodeFrom) continue;
+
+                    long egress = RoutePlanner.getDistanceDuration(CSRGraph.MODES[prevSlot], destinationDistances[i]);
+                    if (duration + egress < bestDuration) {
+                        bestDuration = duration + egress;
+                        bestState = stateFrom;
+                    }
+                }
+            }
+
+            for (int edge = graph.getOutBegin(nodeFrom); edge < graph.getOutEnd(nodeFrom); edge++) {
+                int edgeMode = graph.getEdgeMode(edge);
+                int transferCost = ModeStates.transferCost(prevSlot, edgeMode);
+                if (!allowedModes[edgeMode] || transferCost < 0) continue;
+
+                int stateTo = ModeStates.state(graph.getEdgeTarget(edge), edgeMode);
+                if (closed.get(stateTo)) continue;
+
+                update(stateTo, duration + transferCost + graph.getEdgeDuration(edge), edge, prevSlot, statistics);
+            }
+        }
+
+        return bestState;
+    }
+
+    /**
+     * Path of the settled state, labels of the settled states are never changed, so the path can be read
+     * while the tree is resumed by another query
+     *
+     * @param destinationState settled state returned by search()
+     * @return edge indices of the path from the origin
+     */
+    public int[] findEdgePath(int destinationState) {
+        int length = 0;
+        for (int state = destinationState; edges[state] != -1; state = parentState(state)) {
+            length++;
+        }
+
+        int[] path = new int[length];
+        int state = destinationState;
+        for (int i = length - 1; i >= 0; i--) {
+            path[i] = edges[state];
+            state = parentState(state);
+        }
+        return path;
+    }
+
+    private int parentState(int state) {
+        return ModeStates.state(graph.getEdgeSource(edges[state]), prevSlots[state]);
+    }
+
+    private void update(int state, long duration, int edge, int prevSlot, SearchStatistics statistics) {
+        if (statistics != null) statistics.relaxedEdges++;
+        long currentDuration = durations[state];
+        if (duration >= currentDuration) return;
+
+        if (currentDuration == INFINITY) {
+            openList.insert(state, duration);
+            if (statistics != null) statistics.queuePushes++;
+        } else {
+            openList.decreaseKey(state, duration);
+            if (statistics != null) statistics.decreaseKeys++;
+        }
+
+        durations[state] = duration;
+        edges[state] = edge;
+        prevSlots[state] = (byte) prevSlot;
+    }
+}
@@ -0,0 +1,93 @@
+package cz.cvut.fel.intermodal_planning.planner.pathfinding;
+
+import cz.cvut.fel.intermodal_planning.graph.model.CSRGraph;
+import cz.cvut.fel.intermodal_planning.planner.PlannerMetrics;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.enums.PriorityQueueType;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of the SearchTrees of one CSRGraph.
+ * <p>
+ * Trees are keyed by their origin states - snapped origin nodes with their access penalties - and the allowed modes,
+ * so a resumed tree gives exactly the same result as a new search. GraphMaker creates a new cache with every
+ * CSR snapshot, so trees of the previous graph are dropped. Hits, misses and evictions are counted in PlannerMetrics.
+ */
+public class SearchTreeCache {
+    private final CSRGraph graph;
+    private final PriorityQueueType queueType;
+    private final Map<Key, SearchTree> trees;
+
+    public SearchTreeCache(CSRGraph graph, PriorityQueueType queueType, int capacity) {
+        this.graph = graph;
+        this.queueType = queueType;
+        trees = new LinkedHashMap<Key, SearchTree>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, SearchTree> eldest) {
+                if (size() <= capacity) return false;
+
+                PlannerMetrics.getInstance().increment("SearchTreeCache.evictions", 1);
+                return true;
+            }
+        };
+    }
+
+    public CSRGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Tree lookup, the tree is created whether it is not cached
+     *
+     * @param originIds ids of the origin nodes
+     * @param originPenalties access penalties of the origin nodes
+     * @param allowedModes allowed modes indexed by their ordinal
+     * @return SearchTree of the origin states
+     */
+    public synchronized SearchTree getTree(int[] originIds, long[] originPenalties, boolean[] allowedModes) {
+        Key key = new Key(originIds, originPenalties, allowedModes);
+        SearchTree tree = trees.get(key);
+        PlannerMetrics.getInstance().increment(tree == null ? "SearchTreeCache.misses" : "SearchTreeCache.hits", 1);
+
+        if (tree == null) {
+            tree = new SearchTree(graph, queueType, originIds, originPenalties, allowedModes);
+            trees.put(key, tree);
+        }
+        return tree;
+    }
+
+    public synchronized int size() {
+        return trees.size();
+    }
+
+    private static final class Key {
+        private final int[] originIds;
+        private final long[] originPenalties;
+        private final boolean[] allowedModes;
+
+        private Key(int[] originIds, long[] originPenalties, boolean[] allowedModes) {
+            this.originIds = originIds.clone();
+            this.originPenalties = originPenalties.clone();
+            this.allowedModes = allowedModes.clone();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+
+            Key key = (Key) o;
+            return Arrays.equals(originIds, key.originIds) && Arrays.equals(originPenalties, key.originPenalties)
+                    && Arrays.equals(allowedModes, key.allowedModes);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = Arrays.hashCode(originIds);
+            result = 31 * result + Arrays.hashCode(originPenalties);
+            return 31 * result + Arrays.hashCode(allowedModes);
+        }
+    }
+}
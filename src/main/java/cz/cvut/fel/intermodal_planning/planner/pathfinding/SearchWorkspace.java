@@ -0,0 +1,160 @@
+package cz.cvut.fel.intermodal_planning.planner.pathfinding;
+
+import cz.cvut.fel.intermodal_planning.graph.model.CSRGraph;
+import cz.cvut.fel.intermodal_planning.planner.model.SearchStatistics;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.enums.PriorityQueueType;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.queue.NodePriorityQueue;
+
+import java.util.Arrays;
+
+/**
+ * Per-thread search labels of the mode-expanded graph (see ModeStates).
+ * <p>
+ * Arrays are allocated once per thread and graph, label of a state is valid only whether its stamp equals
+ * the current generation, so reset() is O(1) apart from clearing the queue. Bidirectional searches use
+ * one workspace for each direction. One state after the states of the graph is reserved for a virtual sink.
+ */
+public final class SearchWorkspace {
+    public static final long INFINITY = Long.MAX_VALUE / 4;
+
+    public static final int FORWARD = 0;
+    public static final int BACKWARD = 1;
+
+    private static final ThreadLocal<SearchWorkspace[]> workspaces = ThreadLocal.withInitial(() -> new SearchWorkspace[2]);
+
+    private final CSRGraph graph;
+    private final PriorityQueueType queueType;
+    private final NodePriorityQueue queue;
+
+    private final long[] durations;
+    private final int[] edges;
+    private final int[] parents;
+    private final int[] labelStamps;
+    private final int[] closedStamps;
+    private int generation;
+
+    private SearchWorkspace(CSRGraph graph, PriorityQueueType queueType, int stateCount) {
+        this.graph = graph;
+        this.queueType = queueType;
+
+        queue = queueType.create(stateCount);
+        durations = new long[stateCount];
+        edges = new int[stateCount];
+        parents = new int[stateCount];
+        labelStamps = new int[stateCount];
+        closedStamps = new int[stateCount];
+    }
+
+    /**
+     * Reset workspace of the current thread
+     *
+     * @param graph CSR graph, which is searched
+     * @param queueType type of the queue
+     * @param direction FORWARD or BACKWARD
+     * @return SearchWorkspace instance without any label
+     */
+    public static SearchWorkspace acquire(CSRGraph graph, PriorityQueueType queueType, int direction) {
+        SearchWorkspace[] threadWorkspaces = workspaces.get();
+        SearchWorkspace workspace = threadWorkspaces[direction];
+
+        if (workspace == null || workspace.graph != graph || workspace.queueType != queueType) {
+            workspace = new SearchWorkspace(graph, queueType, ModeStates.stateCount(graph) + 1);
+            threadWorkspaces[direction] = workspace;
+        }
+
+        workspace.reset();
+        return workspace;
+    }
+
+    private void reset() {
+        queue.clear();
+
+        if (++generation == Integer.MAX_VALUE) {
+            Arrays.fill(labelStamps, 0);
+            Arrays.fill(closedStamps, 0);
+            generation = 1;
+        }
+    }
+
+    /**
+     * @return virtual state, which is not a state of the graph
+     */
+    public int getSinkState() {
+        return durations.length - 1;
+    }
+
+    public NodePriorityQueue getQueue() {
+        return queue;
+    }
+
+    /**
+     * @param state search state
+     * @return duration of the state's label or INFINITY whether the state was not reached
+     */
+    public long getDuration(int state) {
+        return labelStamps[state] == generation ? durations[state] : INFINITY;
+    }
+
+    /**
+     * @param state search state
+     * @return edge, by which the state was reached (left in backward searches), -1 for the initial states
+     */
+    public int getEdge(int state) {
+        return edges[state];
+    }
+
+    /**
+     * @param state search state
+     * @return value stored by the search with the label, e.g. parent state or previous slot
+     */
+    public int getParent(int state) {
+        return parents[state];
+    }
+
+    /**
+     * Label setting
+     *
+     * @param state search state
+     * @param duration duration of the label
+     * @param edge edge, by which the state was reached, -1 for the initial states
+     * @param parent parent state or previous slot
+     */
+    public void setLabel(int state, long duration, int edge, int parent) {
+        labelStamps[state] = generation;
+        durations[state] = duration;
+        edges[state] = edge;
+        parents[state] = parent;
+    }
+
+    /**
+     * Relaxation of the state keyed by its duration, state is inserted to the queue or its key is decreased
+     *
+     * @param state search state
+     * @param duration new duration of the state, nothing is changed whether it is not lower than the current one
+     * @param edge edge, by which the state was reached, -1 for the initial states
+     * @param parent parent state or previous slot
+     * @param statistics SearchStatistics, to which the queue operation is added
+     */
+    public void update(int state, long duration, int edge, int parent, SearchStatistics statistics) {
+        long currentDuration = getDuration(state);
+        if (duration >= currentDuration) return;
+
+        if (currentDuration == INFINITY) {
+            queue.insert(state, duration);
+            statistics.queuePushes++;
+        } else {
+            queue.decreaseKey(state, duration);
+            statistics.decreaseKeys++;
+        }
+
+        setLabel(state, duration, edge, parent);
+    }
+
+    public boolean isClosed(int state) {
+        return closedStamps[state] == generation;
+    }
+
+    public void close(int state) {
+        closedStamps[state] = generation;
+    }
+}
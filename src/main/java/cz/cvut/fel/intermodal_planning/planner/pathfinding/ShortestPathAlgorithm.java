@@ -1,36 +1,132 @@
 package cz.cvut.fel.intermodal_planning.planner.pathfinding;
 
-import com.umotional.basestructures.Graph;
 import com.umotional.basestructures.Node;
+import cz.cvut.fel.intermodal_planning.general.Storage;
+import cz.cvut.fel.intermodal_planning.graph.model.CSRGraph;
+import cz.cvut.fel.intermodal_planning.graph.model.TravelTimeProfiles;
 import cz.cvut.fel.intermodal_planning.planner.RoutePlanner;
 import cz.cvut.fel.intermodal_planning.graph.model.GraphEdge;
 import cz.cvut.fel.intermodal_planning.planner.model.Location;
+import cz.cvut.fel.intermodal_planning.planner.model.SearchStatistics;
 import cz.cvut.fel.intermodal_planning.planner.model.TransportMode;
-import cz.cvut.fel.intermodal_planning.general.utils.LocationUtils;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.arcflags.ArcFlags;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.enums.PriorityQueueType;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.heuristic.Heuristic;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.queue.NodePriorityQueue;
 
-import java.util.*;
-import java.util.stream.Collectors;
+import java.util.List;
 
-public class ShortestPathAlgorithm<TNode extends Node> {
-    private final Graph<TNode, GraphEdge> graph;
+/**
+ * Dijkstra's algorithm (A* whether the heuristic is set) over the mode-expanded graph (see ModeStates).
+ * <p>
+ * Labels are pairs (node, last mode) stored in flat arrays, so a node reached by different modes is settled
+ * once for each of them and the previous mode of the label is known without any lookup.
+ * Labels are kept in the per-thread SearchWorkspace, so the algorithm itself is cheap to create.
+ * All destination nodes are attached to a virtual sink by their egress penalty, the label of the sink is an upper bound
+ * of the result. States, whose key (duration and estimate) increased by the minimal egress penalty is not below
+ * the bound, can not improve it, so they are not inserted and the search stops once the minimal key reaches the bound.
+ * <p>
+ * Whether the travel time profiles are set, the search is time-dependent Dijkstra's algorithm, edge durations
+ * are evaluated at the time the edge is entered. Profiles are FIFO, so the label-setting stays exact.
+ * Whether the arc flags are set, edges not leading to the cells of the destination nodes are skipped.
+ * Whether the profile weights are set, edge weights, transfer costs, access and egress are given by the cost profile.
+ */
+public class ShortestPathAlgorithm<TNode extends Node> implements PathfindingAlgorithm<TNode> {
+    private static final long INFINITY = SearchWorkspace.INFINITY;
 
-    private HashSet<Integer> closedList;
-    private FibonacciHeap<TNode> openList;
-    private List<GraphEdge> path;
-    private Map<Integer, Integer> prevNodes;
+    private final CSRGraph graph;
+    private final PriorityQueueType queueType;
 
+    private SearchWorkspace workspace;
+    private NodePriorityQueue openList;
 
-    public ShortestPathAlgorithm(Graph<TNode, GraphEdge> graph) {
+    private Heuristic heuristic;
+    private ArcFlags arcFlags;
+    private TravelTimeProfiles travelTimeProfiles;
+    private ProfileWeights profileWeights;
+    private long departureTime;
+    private int sinkState;
+    private long minEgress;
+    private long settledKey;
+    private boolean pruning = true;
+    private SearchStatistics statistics = new SearchStatistics();
+
+    public ShortestPathAlgorithm(CSRGraph graph) {
+        this(graph, Storage.PRIORITY_QUEUE_TYPE);
+    }
+
+    public ShortestPathAlgorithm(CSRGraph graph, PriorityQueueType queueType) {
         this.graph = graph;
+        this.queueType = queueType;
+    }
 
-        openList = new FibonacciHeap<>();
-        closedList = new HashSet<>();
-        path = new ArrayList<>();
-        prevNodes = new HashMap<>();
+    /**
+     * Setting A* heuristic, null stands for plain Dijkstra's algorithm.
+     * Keys of the relaxed states are never lower than the key of the settled state (pathmax), so the keys stay monotone
+     * for the RadixHeap, but the path is optimal only if the heuristic is consistent.
+     *
+     * @param heuristic consistent Heuristic
+     */
+    public void setHeuristic(Heuristic heuristic) {
+        this.heuristic = heuristic;
     }
 
     /**
-     * Finding path in model using Dijkstra's algorithm - Many to many
+     * Setting arc flags pruning, null stands for no pruning
+     *
+     * @param arcFlags ArcFlags of the graph, they have to support the modes of the planned queries
+     */
+    public void setArcFlags(ArcFlags arcFlags) {
+        this.arcFlags = arcFlags;
+    }
+
+    /**
+     * Setting weights of the cost profile, null stands for the default weights
+     *
+     * @param profileWeights ProfileWeights of the graph
+     */
+    public void setProfileWeights(ProfileWeights profileWeights) {
+        this.profileWeights = profileWeights;
+    }
+
+    /**
+     * Setting the pruning by the upper bound of the sink, the search without pruning settles all reachable states,
+     * it is used only to verify the pruned one
+     *
+     * @param pruning whether the states, which can not improve the bound, are skipped
+     */
+    public void setPruning(boolean pruning) {
+        this.pruning = pruning;
+    }
+
+    /**
+     * Setting time-dependent search, null profiles stand for static edge durations
+     *
+     * @param travelTimeProfiles FIFO TravelTimeProfiles of the graph
+     * @param departureTime departure time from the origin in seconds since midnight
+     */
+    public void setDepartureTime(TravelTimeProfiles travelTimeProfiles, long departureTime) {
+        this.travelTimeProfiles = travelTimeProfiles;
+        this.departureTime = departureTime;
+    }
+
+    /**
+     * Number of states settled by the last plan() call
+     *
+     * @return settled state count
+     */
+    @Override
+    public int getSettledNodeCount() {
+        return (int) statistics.settledStates;
+    }
+
+    @Override
+    public SearchStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Finding path in model using Dijkstra's algorithm (A* whether the heuristic is set) - Many to many
      *
      * @param origin Origin Location
      * @param destination Destination Location
@@ -39,97 +135,95 @@ public class ShortestPathAlgorithm<TNode extends Node> {
      * @param availableModes List of transport modes, which are allowed to use
      * @return Edge sequence representing the model path
      */
+    @Override
     public List<GraphEdge> plan(Location origin, Location destination, List<TNode> originNodes, List<TNode> destinationNodes,
                                 TransportMode... availableModes) {
-        List availableModesList = Arrays.asList(availableModes);
-        FibonacciHeap.Entry<TNode> entry_from;
-        FibonacciHeap.Entry<TNode> entry_old;
+        return graph.getGraphEdges(planEdgePath(origin, destination, originNodes, destinationNodes, availableModes));
+    }
 
-        TNode node_to;
-        TreeMap<Long, List<GraphEdge>> pathTreeMap = new TreeMap<>();
-        List<GraphEdge> list;
-        double priority_new;
-        TransportMode prevMode = null;
+    @Override
+    public int[] planEdgePath(Location origin, Location destination, List<TNode> originNodes, List<TNode> destinationNodes,
+                              TransportMode... availableModes) {
+        boolean[] allowedModes = ModeStates.allowedModes(availableModes);
+        long duration_new;
+        int stateFrom, stateTo, nodeFrom, prevSlot, edgeMode, transferCost;
 
-        openList = new FibonacciHeap<>();
-        closedList.clear();
-        path.clear();
-        prevNodes.clear();
+        int[] destinationIds = destinationNodes.stream().mapToInt(node -> node.id).toArray();
+        double[] destinationDistances = new double[destinationIds.length];
+        minEgress = INFINITY;
+        for (int i = 0; i < destinationIds.length; i++) {
+            destinationDistances[i] = graph.distance(destinationIds[i], destination);
+            for (TransportMode mode : availableModes) {
+                minEgress = Math.min(minEgress, distanceDuration(mode, destinationDistances[i]));
+            }
+        }
 
-        originNodes.stream().forEach(originNode -> openList.enqueue(originNode,
-                RoutePlanner.getDistanceDuration(TransportMode.WALK, LocationUtils.distance(LocationUtils.getNodeLocation(originNode), origin))));
+        workspace = SearchWorkspace.acquire(graph, queueType, SearchWorkspace.FORWARD);
+        openList = workspace.getQueue();
+        sinkState = workspace.getSinkState();
+        statistics = new SearchStatistics();
+        statistics.originCandidates = originNodes.size();
+        statistics.destinationCandidates = destinationNodes.size();
+
+        if (heuristic != null) {
+            heuristic.prepare(destinationIds);
+        }
+        long targetMask = arcFlags == null ? 0 : arcFlags.getTargetMask(destinationIds);
+        settledKey = 0;
+
+        for (TNode originNode : originNodes) {
+            long originPenalty = distanceDuration(TransportMode.WALK, graph.distance(originNode.id, origin));
+            update(ModeStates.state(originNode.id, ModeStates.NO_MODE), originPenalty, -1, ModeStates.NO_MODE);
+        }
 
         while (!openList.isEmpty()) {
-            entry_from = openList.dequeueMin();
-
-            //we find the DESTINATION NODE! Now, we have to backtrack the path
-            if (destinationNodes.contains(entry_from.getValue())) {
-                List<GraphEdge> path = findPath(graph, originNodes, entry_from.getValue());
-                if (!path.isEmpty()) {
-                    GraphEdge lastEdge = path.get(path.size() - 1);
-                    TransportMode lastMode = lastEdge.transportMode;
-                    double distance = LocationUtils.distance(LocationUtils.getNodeLocation(graph.getNode(lastEdge.toId)), destination);
-                    long destinationPenalty = RoutePlanner.getDistanceDuration(lastMode, distance);
-
-                    Long duration = path.stream()
-                            .mapToLong(graphEdge -> graphEdge.durationInSeconds)
-                            .sum() + destinationPenalty;
-                    pathTreeMap.put(duration, path);
-                }
-
-                destinationNodes.remove(entry_from.getValue());
-                if (destinationNodes.isEmpty()) break;
+            // the sink is not queued, its label is the bound, none of the open states extended by the minimal egress
+            // can improve it
+            if (pruning && openList.peekMinKey() + minEgress >= workspace.getDuration(sinkState)) break;
+
+            settledKey = openList.peekMinKey();
+            stateFrom = openList.pollMin();
+            workspace.close(stateFrom);
+            statistics.settledStates++;
+
+            nodeFrom = ModeStates.node(stateFrom);
+            prevSlot = ModeStates.slot(stateFrom);
+
+            //we find the DESTINATION NODE! It is attached to the sink by the egress, path has to contain at least one edge
+            int destinationIdx = ModeStates.indexOf(destinationIds, nodeFrom);
+            if (destinationIdx != -1 && prevSlot != ModeStates.NO_MODE) {
+                long duration = workspace.getDuration(stateFrom)
+                        + distanceDuration(CSRGraph.MODES[prevSlot], destinationDistances[destinationIdx]);
+                updateSink(duration, stateFrom);
             }
 
-            closedList.add(entry_from.getValue().id);
-
-            //there is an option, that list of outcoming edges is empty- that's why there is try/catch
-            try {
-                list = graph.getOutEdges(entry_from.getValue().id);
-
-                // loop all edges from dequeued node
-                for (GraphEdge edge : list) {
-                    //if node is in closed list
-                    // or is not allowed to use a specified transport transportMode then continue
-                    // or is not transfer possible
-
-                    if (prevNodes.get(edge.fromId) != null) {
-                        prevMode = graph.getEdge(prevNodes.get(edge.fromId), edge.fromId).transportMode;
-                    }
-
-                    if (closedList.contains(edge.toId)
-                            || !availableModesList.contains(edge.transportMode)
-                            || !RoutePlanner.isTransferPossible(prevMode, edge.transportMode)
-                            ) {
-                        continue;
-                    }
-                    node_to = graph.getNode(edge.toId);
-
-                    int transferPenalty = (prevMode == null || prevMode == edge.transportMode) ? 0 : RoutePlanner.getTransferPenalty(prevMode);
-
-                    // get cost of start node, we substract start-node's distance and after that we add end-node's distance
-                    // and we also add edge length divided by allowed speed
-                    priority_new = entry_from.getPriority() + edge.durationInSeconds + transferPenalty;
-
-                    entry_old = openList.getEntry(node_to);
-                    //node is in the open list, so we have to compare priority and choose the better ones
-                    if (entry_old != null) {
-                        if (entry_old.getPriority() > priority_new) {
-                            openList.decreaseKey(entry_old, priority_new);
-                            prevNodes.put(node_to.id, entry_from.getValue().id);
-                        }
-                    } else {
-                        //if node is not in the open list, then we have to add it there
-                        prevNodes.put(node_to.id, entry_from.getValue().id);
-                        // do something
-                        openList.enqueue(node_to, priority_new);
-                    }
-                }
-            } catch (NullPointerException ignored) {
+            // loop all edges from dequeued node
+            for (int edge = graph.getOutBegin(nodeFrom); edge < graph.getOutEnd(nodeFrom); edge++) {
+                //if transport mode is not allowed or transfer is not possible then continue
+                edgeMode = graph.getEdgeMode(edge);
+                transferCost = profileWeights == null ? ModeStates.transferCost(prevSlot, edgeMode)
+                        : profileWeights.getTransferCost(prevSlot, edgeMode);
+                if (!allowedModes[edgeMode] || transferCost < 0) continue;
+
+                //if edge does not lead to any destination cell then continue
+                if (arcFlags != null && (arcFlags.getFlags(edge, prevSlot) & targetMask) == 0) continue;
+
+                //if state is in closed list then continue
+                stateTo = ModeStates.state(graph.getEdgeTarget(edge), edgeMode);
+                if (workspace.isClosed(stateTo)) continue;
+
+                duration_new = workspace.getDuration(stateFrom) + transferCost;
+                duration_new += edgeDuration(edge, departureTime + duration_new);
+                update(stateTo, duration_new, edge, prevSlot);
             }
         }
 
-        return pathTreeMap.isEmpty() ? null : pathTreeMap.firstEntry().getValue();
+        if (workspace.getDuration(sinkState) == INFINITY) return null;
+
+        long reconstructStart = System.nanoTime();
+        int[] path = findEdgePath(workspace.getParent(sinkState));
+        statistics.reconstructNanos = System.nanoTime() - reconstructStart;
+        return path;
     }
 
     /**
@@ -146,22 +240,78 @@ public class ShortestPathAlgorithm<TNode extends Node> {
 
     }
 
-    private List<GraphEdge> findPath(Graph<TNode, GraphEdge> graph, List<TNode> originList, TNode destination) {
-        LinkedList<GraphEdge> path = new LinkedList<>();
-        int tmpId = destination.id;
+    /**
+     * Relaxation of the state, state is inserted to the open list or its key is decreased
+     */
+    private void update(int state, long duration, int edge, int prevSlot) {
+        if (edge != -1) statistics.relaxedEdges++;
+        long currentDuration = workspace.getDuration(state);
+        if (duration >= currentDuration) return;
+
+        long key = Math.max(duration + estimate(ModeStates.node(state)), settledKey);
+        if (pruning && key + minEgress >= workspace.getDuration(sinkState)) return;
+
+        if (currentDuration == INFINITY) {
+            openList.insert(state, key);
+            statistics.queuePushes++;
+        } else {
+            openList.decreaseKey(state, key);
+            statistics.decreaseKeys++;
+        }
+
+        workspace.setLabel(state, duration, edge, prevSlot);
+    }
+
+    /**
+     * Relaxation of the virtual sink, the sink is not inserted to the open list, its label is only the upper bound
+     */
+    private void updateSink(long duration, int destinationState) {
+        if (duration >= workspace.getDuration(sinkState)) return;
 
-        List<Integer> originIdList = originList.stream().map(origin -> origin.id).collect(Collectors.toList());
+        workspace.setLabel(sinkState, duration, -1, destinationState);
+    }
 
-        while (!originIdList.contains(tmpId)) {
-            GraphEdge edge = graph.getEdge(prevNodes.get(tmpId), tmpId);
-            path.addFirst(edge);
-            tmpId = prevNodes.get(tmpId);
+    /**
+     * Walk of the parent edges written by the relaxation, origin states are the only ones without a parent edge
+     */
+    private int[] findEdgePath(int destinationState) {
+        int length = 0;
+        for (int state = destinationState; workspace.getEdge(state) != -1; state = parentState(state)) {
+            length++;
         }
 
+        int[] path = new int[length];
+        int state = destinationState;
+        for (int i = length - 1; i >= 0; i--) {
+            path[i] = workspace.getEdge(state);
+            state = parentState(state);
+        }
         return path;
     }
 
+    private int parentState(int state) {
+        return ModeStates.state(graph.getEdgeSource(workspace.getEdge(state)), workspace.getParent(state));
+    }
+
+    /**
+     * Duration of the edge entered at the given time, profile weights and time-dependent durations are exclusive
+     */
+    private int edgeDuration(int edge, long time) {
+        if (profileWeights != null) return profileWeights.getEdgeWeight(edge);
+        if (travelTimeProfiles != null) return travelTimeProfiles.getDuration(edge, time);
+        return graph.getEdgeDuration(edge);
+    }
+
+    private long distanceDuration(TransportMode mode, double distance) {
+        return profileWeights == null ? RoutePlanner.getDistanceDuration(mode, distance)
+                : profileWeights.getDistanceDuration(mode, distance);
+    }
+
+    private long estimate(int nodeId) {
+        return heuristic == null ? 0 : heuristic.estimate(nodeId);
+    }
+
     public boolean equals(TNode o1, TNode o2) {
         return o1.id == o2.id;
     }
-}
\ No newline at end of file
+}
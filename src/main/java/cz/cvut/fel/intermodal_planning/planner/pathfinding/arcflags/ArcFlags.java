@@ -0,0 +1,242 @@
+package cz.cvut.fel.intermodal_planning.planner.pathfinding.arcflags;
+
+import cz.cvut.fel.intermodal_planning.graph.model.CSRGraph;
+import cz.cvut.fel.intermodal_planning.planner.model.LocationArea;
+import cz.cvut.fel.intermodal_planning.planner.model.TransportMode;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.ModeStates;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.ch.CHQueryEngine;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.queue.FourAryHeap;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.stream.IntStream;
+
+/**
+ * Arc flags of the mode-expanded graph (see ModeStates).
+ * <p>
+ * The area is partitioned into a regular grid of at most 64 cells, nodes outside of the area belong to the border cells.
+ * Every pair (edge, previous slot) has a bit mask of cells it leads to on some shortest path. The flags are computed
+ * by backward searches from every boundary state of the cell (state of the cell reached by an edge from another cell),
+ * edges inside of the cell are flagged for the cell as well. Flags are exact for searches over all available modes
+ * with static edge durations.
+ */
+public class ArcFlags implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private static final Logger logger = LogManager.getLogger(ArcFlags.class);
+
+    private static final long INFINITY = Long.MAX_VALUE;
+
+    private final long graphFingerprint;
+    private final int gridSize;
+    private final double upLat, bottomLat, leftLon, rightLon;
+
+    /**
+     * [edge * SLOT_COUNT + previous slot] mask of cells
+     */
+    private final long[] flags;
+    private final long[] nodeCells;
+
+    private ArcFlags(CSRGraph graph, LocationArea area, int gridSize) {
+        this.graphFingerprint = graph.getFingerprint();
+        this.gridSize = gridSize;
+        this.upLat = area.upLat;
+        this.bottomLat = area.bottomLat;
+        this.leftLon = area.leftLon;
+        this.rightLon = area.rightLon;
+
+        flags = new long[graph.getEdgeCount() * ModeStates.SLOT_COUNT];
+        nodeCells = new long[graph.getNodeCount()];
+        for (int nodeId = 0; nodeId < graph.getNodeCount(); nodeId++) {
+            nodeCells[nodeId] = 1L << getCell(graph.getLatitude(nodeId), graph.getLongitude(nodeId));
+        }
+    }
+
+    /**
+     * Partition of the area and computation of the flags
+     *
+     * @param graph CSR graph
+     * @param area partitioned LocationArea
+     * @param gridSize number of cells along each side of the area, at most 8
+     * @return ArcFlags instance
+     */
+    public static ArcFlags create(CSRGraph graph, LocationArea area, int gridSize) {
+        if (gridSize < 1 || gridSize * gridSize > Long.SIZE) {
+            throw new IllegalArgumentException("Grid of arc flags can have at most " + Long.SIZE + " cells");
+        }
+        logger.info("Creating arc flags...");
+
+        ArcFlags arcFlags = new ArcFlags(graph, area, gridSize);
+        int slotCount = ModeStates.SLOT_COUNT;
+
+        // cells are independent, each of them collects its flags separately
+        BitSet[] cellFlags = IntStream.range(0, gridSize * gridSize).parallel()
+                .mapToObj(cell -> arcFlags.computeCellFlags(graph, cell))
+                .toArray(BitSet[]::new);
+
+        for (int cell = 0; cell < cellFlags.length; cell++) {
+            long cellMask = 1L << cell;
+            for (int i = cellFlags[cell].nextSetBit(0); i >= 0; i = cellFlags[cell].nextSetBit(i + 1)) {
+                arcFlags.flags[i] |= cellMask;
+            }
+        }
+
+        for (int e = 0; e < graph.getEdgeCount(); e++) {
+            long innerMask = arcFlags.nodeCells[graph.getEdgeSource(e)] & arcFlags.nodeCells[graph.getEdgeTarget(e)];
+            for (int slot = 0; slot < slotCount; slot++) {
+                arcFlags.flags[e * slotCount + slot] |= innerMask;
+            }
+        }
+
+        logger.info("Arc flags created, " + cellFlags.length + " cells");
+        return arcFlags;
+    }
+
+    /**
+     * Check whether the flags can be used by the search, they are exact only for searches over all available modes
+     *
+     * @param availableModes transport modes allowed in the query
+     * @return true whether the flags can prune the search
+     */
+    public static boolean supports(TransportMode... availableModes) {
+        return CHQueryEngine.supports(availableModes);
+    }
+
+    /**
+     * Check whether the flags were computed for the given graph
+     *
+     * @param graph CSR graph
+     * @return true whether the flags can be used with the graph
+     */
+    public boolean isBuiltFor(CSRGraph graph) {
+        return graphFingerprint == graph.getFingerprint();
+    }
+
+    /**
+     * Mask of the cells containing any of the nodes
+     *
+     * @param nodeIds target node ids
+     * @return mask of cells
+     */
+    public long getTargetMask(int[] nodeIds) {
+        long mask = 0;
+        for (int nodeId : nodeIds) {
+            mask |= nodeCells[nodeId];
+        }
+        return mask;
+    }
+
+    /**
+     * Flags of the edge leaving the state
+     *
+     * @param edgeIdx Edge index
+     * @param prevSlot slot of the state the edge leaves
+     * @return mask of cells reachable by the edge on some shortest path
+     */
+    public long getFlags(int edgeIdx, int prevSlot) {
+        return flags[edgeIdx * ModeStates.SLOT_COUNT + prevSlot];
+    }
+
+    private int getCell(double lat, double lon) {
+        int row = (int) Math.floor((lat - bottomLat) / (upLat - bottomLat) * gridSize);
+        int col = (int) Math.floor((lon - leftLon) / (rightLon - leftLon) * gridSize);
+        row = Math.min(Math.max(row, 0), gridSize - 1);
+        col = Math.min(Math.max(col, 0), gridSize - 1);
+        return row * gridSize + col;
+    }
+
+    /**
+     * Pairs (edge, previous slot) of shortest path trees towards the boundary states of the cell
+     */
+    private BitSet computeCellFlags(CSRGraph graph, int cell) {
+        long cellMask = 1L << cell;
+        int stateCount = ModeStates.stateCount(graph);
+        BitSet cellFlags = new BitSet();
+
+        long[] durations = new long[stateCount];
+        int[] parentEdges = new int[stateCount];
+        int[] touched = new int[stateCount];
+        Arrays.fill(durations, INFINITY);
+        FourAryHeap heap = new FourAryHeap(stateCount);
+
+        for (int nodeId = 0; nodeId < graph.getNodeCount(); nodeId++) {
+            if ((nodeCells[nodeId] & cellMask) == 0) continue;
+
+            for (TransportMode mode : TransportMode.availableModes()) {
+                if (!isBoundary(graph, nodeId, mode.ordinal(), cellMask)) continue;
+
+                int touchedCount = backwardSearch(graph, ModeStates.state(nodeId, mode.ordinal()), durations,
+                        parentEdges, touched, heap);
+                for (int i = 0; i < touchedCount; i++) {
+                    int state = touched[i];
+                    if (parentEdges[state] != -1) {
+                        cellFlags.set(parentEdges[state] * ModeStates.SLOT_COUNT + ModeStates.slot(state));
+                    }
+                    durations[state] = INFINITY;
+                }
+            }
+        }
+        return cellFlags;
+    }
+
+    private boolean isBoundary(CSRGraph graph, int nodeId, int mode, long cellMask) {
+        for (int pos = graph.getInBegin(nodeId); pos < graph.getInEnd(nodeId); pos++) {
+            int edge = graph.getInEdge(pos);
+            if (graph.getEdgeMode(edge) == mode && (nodeCells[graph.getEdgeSource(edge)] & cellMask) == 0) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Dijkstra's algorithm over the reversed mode-expanded graph, parent edge of the state is its first edge
+     * on the shortest path to the target state
+     *
+     * @return number of touched states
+     */
+    private static int backwardSearch(CSRGraph graph, int targetState, long[] durations, int[] parentEdges,
+                                      int[] touched, FourAryHeap heap) {
+        boolean[] allowedModes = ModeStates.allowedModes(TransportMode.availableModes());
+
+        int touchedCount = 0;
+        durations[targetState] = 0;
+        parentEdges[targetState] = -1;
+        touched[touchedCount++] = targetState;
+        heap.insert(targetState, 0);
+
+        while (!heap.isEmpty()) {
+            int state = heap.pollMin();
+            int slot = ModeStates.slot(state);
+            if (slot == ModeStates.NO_MODE) continue;
+
+            int nodeId = ModeStates.node(state);
+            long duration = durations[state];
+
+            for (int pos = graph.getInBegin(nodeId); pos < graph.getInEnd(nodeId); pos++) {
+                int edge = graph.getInEdge(pos);
+                if (graph.getEdgeMode(edge) != slot) continue;
+
+                for (int prevSlot = 0; prevSlot < ModeStates.SLOT_COUNT; prevSlot++) {
+                    if (prevSlot != ModeStates.NO_MODE && !allowedModes[prevSlot]) continue;
+                    int transferCost = ModeStates.transferCost(prevSlot, slot);
+                    if (transferCost < 0) continue;
+
+                    int prevState = ModeStates.state(graph.getEdgeSource(edge), prevSlot);
+                    long durationNew = duration + graph.getEdgeDuration(edge) + transferCost;
+                    if (durationNew >= durations[prevState]) continue;
+
+                    if (durations[prevState] == INFINITY) {
+                        touched[touchedCount++] = prevState;
+                        heap.insert(prevState, durationNew);
+                    } else {
+                        heap.decreaseKey(prevState, durationNew);
+                    }
+                    durations[prevState] = durationNew;
+                    parentEdges[prevState] = edge;
+                }
+            }
+        }
+        return touchedCount;
+    }
+}
@@ -0,0 +1,118 @@
+package cz.cvut.fel.intermodal_planning.planner.pathfinding.cch;
+
+import cz.cvut.fel.intermodal_planning.graph.model.CSRGraph;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.ModeStates;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.RoutingMetric;
+
+import java.util.Arrays;
+
+/**
+ * Arc weights of the CustomizableContractionHierarchy customized for one RoutingMetric.
+ * <p>
+ * Arcs get the weights of the graph edges they represent, then the lower triangles are processed in increasing rank
+ * of their lowest state (basic customization), so the weight of every arc is the shortest path over lower ranked states.
+ * Upward weight is the weight from the lower ranked state of the arc to the higher one, downward weight the opposite.
+ */
+public class CCHMetric {
+    static final int INFINITY = Integer.MAX_VALUE / 2;
+
+    final CustomizableContractionHierarchy hierarchy;
+    final RoutingMetric metric;
+
+    final int[] upWeight;
+    final int[] downWeight;
+
+    /**
+     * Graph edge represented by the arc, -1 whether it is a shortcut over the middle state
+     */
+    final int[] upGraphEdge;
+    final int[] downGraphEdge;
+    final int[] upMiddle;
+    final int[] downMiddle;
+
+    CCHMetric(CustomizableContractionHierarchy hierarchy, CSRGraph graph, RoutingMetric metric) {
+        this.hierarchy = hierarchy;
+        this.metric = metric;
+
+        int arcCount = hierarchy.getArcCount();
+        upWeight = new int[arcCount];
+        downWeight = new int[arcCount];
+        upGraphEdge = new int[arcCount];
+        downGraphEdge = new int[arcCount];
+        upMiddle = new int[arcCount];
+        downMiddle = new int[arcCount];
+        Arrays.fill(upWeight, INFINITY);
+        Arrays.fill(downWeight, INFINITY);
+        Arrays.fill(upGraphEdge, -1);
+        Arrays.fill(downGraphEdge, -1);
+        Arrays.fill(upMiddle, -1);
+        Arrays.fill(downMiddle, -1);
+
+        setInputWeights(graph);
+        customize();
+    }
+
+    public RoutingMetric getMetric() {
+        return metric;
+    }
+
+    private void setInputWeights(CSRGraph graph) {
+        CustomizableContractionHierarchy.forEachStateEdge(graph, (from, to, edge) -> {
+            int transferCost = metric.getTransferCost(ModeStates.slot(from), graph.getEdgeMode(edge));
+            if (from == to || transferCost < 0) return;
+
+            int arc = hierarchy.findArc(from, to);
+            int weight = (int) Math.min((long) metric.getEdgeDuration(graph, edge) + transferCost, INFINITY);
+            if (hierarchy.arcLow[arc] == from) {
+                if (weight < upWeight[arc]) {
+                    upWeight[arc] = weight;
+                    upGraphEdge[arc] = edge;
+                }
+            } else if (weight < downWeight[arc]) {
+                downWeight[arc] = weight;
+                downGraphEdge[arc] = edge;
+            }
+        });
+    }
+
+    /**
+     * Lower triangles (state, x, y) improve the arc between x and y over the state
+     */
+    private void customize() {
+        int[] order = new int[hierarchy.stateCount];
+        for (int state = 0; state < hierarchy.stateCount; state++) {
+            order[hierarchy.rank[state]] = state;
+        }
+
+        for (int state : order) {
+            int begin = hierarchy.upOffset[state];
+            int end = hierarchy.upOffset[state + 1];
+
+            for (int i = begin; i < end; i++) {
+                // weight x -> state is the downward weight of the arc (state, x)
+                if (downWeight[i] == INFINITY) continue;
+
+                for (int j = begin; j < end; j++) {
+                    if (i == j || upWeight[j] == INFINITY) continue;
+
+                    int x = hierarchy.upTarget[i];
+                    int y = hierarchy.upTarget[j];
+                    int weight = (int) Math.min((long) downWeight[i] + upWeight[j], INFINITY);
+                    int arc = hierarchy.findArc(x, y);
+
+                    if (hierarchy.arcLow[arc] == x) {
+                        if (weight < upWeight[arc]) {
+                            upWeight[arc] = weight;
+                            upGraphEdge[arc] = -1;
+                            upMiddle[arc] = state;
+                        }
+                    } else if (weight < downWeight[arc]) {
+                        downWeight[arc] = weight;
+                        downGraphEdge[arc] = -1;
+                        downMiddle[arc] = state;
+                    }
+                }
+            }
+        }
+    }
+}
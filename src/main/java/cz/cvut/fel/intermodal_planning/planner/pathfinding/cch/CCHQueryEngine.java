@@ -0,0 +1,83 @@
+package cz.cvut.fel.intermodal_planning.planner.pathfinding.cch;
+
+import com.umotional.basestructures.Node;
+import cz.cvut.fel.intermodal_planning.general.Storage;
+import cz.cvut.fel.intermodal_planning.graph.model.CSRGraph;
+import cz.cvut.fel.intermodal_planning.planner.model.TransportMode;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.SearchWorkspace;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.ch.UpwardSearchEngine;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.enums.PriorityQueueType;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bidirectional upward search (see UpwardSearchEngine) in the CustomizableContractionHierarchy
+ * with the weights of a CCHMetric, access and egress penalties are given by its RoutingMetric.
+ */
+public class CCHQueryEngine<TNode extends Node> extends UpwardSearchEngine<TNode> {
+    private final CCHMetric cchMetric;
+    private final CustomizableContractionHierarchy hierarchy;
+
+    public CCHQueryEngine(CCHMetric cchMetric, CSRGraph graph) {
+        this(cchMetric, graph, Storage.PRIORITY_QUEUE_TYPE);
+    }
+
+    public CCHQueryEngine(CCHMetric cchMetric, CSRGraph graph, PriorityQueueType queueType) {
+        super(graph, queueType);
+        this.cchMetric = cchMetric;
+        this.hierarchy = cchMetric.hierarchy;
+    }
+
+    @Override
+    protected long distanceDuration(TransportMode mode, double distance) {
+        return cchMetric.metric.getDistanceDuration(mode, distance);
+    }
+
+    @Override
+    protected void relaxArcs(int state, long duration, boolean isForward) {
+        int[] weights = isForward ? cchMetric.upWeight : cchMetric.downWeight;
+        SearchWorkspace workspace = isForward ? forward : backward;
+
+        for (int arc = hierarchy.upOffset[state]; arc < hierarchy.upOffset[state + 1]; arc++) {
+            if (weights[arc] == CCHMetric.INFINITY) continue;
+            update(workspace, hierarchy.upTarget[arc], duration + weights[arc], arc);
+        }
+    }
+
+    @Override
+    protected int[] buildEdgePath() {
+        List<Integer> upwardArcs = new ArrayList<>();
+        for (int state = bestState; forward.getEdge(state) != -1; state = hierarchy.arcLow[forward.getEdge(state)]) {
+            upwardArcs.add(forward.getEdge(state));
+        }
+
+        List<Integer> path = new ArrayList<>();
+        for (int i = upwardArcs.size() - 1; i >= 0; i--) {
+            unpack(upwardArcs.get(i), true, path);
+        }
+        for (int state = bestState; backward.getEdge(state) != -1; state = hierarchy.arcLow[backward.getEdge(state)]) {
+            unpack(backward.getEdge(state), false, path);
+        }
+        return path.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Replacement of the arc by the original graph edges, upward arc leads from its lower ranked state to the higher one
+     */
+    private void unpack(int arc, boolean isUpward, List<Integer> path) {
+        int graphEdge = isUpward ? cchMetric.upGraphEdge[arc] : cchMetric.downGraphEdge[arc];
+        if (graphEdge != -1) {
+            path.add(graphEdge);
+            return;
+        }
+
+        int middle = isUpward ? cchMetric.upMiddle[arc] : cchMetric.downMiddle[arc];
+        int from = isUpward ? hierarchy.arcLow[arc] : hierarchy.upTarget[arc];
+        int to = isUpward ? hierarchy.upTarget[arc] : hierarchy.arcLow[arc];
+
+        // middle state is ranked lower than both states of the arc
+        unpack(hierarchy.findArc(from, middle), false, path);
+        unpack(hierarchy.findArc(middle, to), true, path);
+    }
+}
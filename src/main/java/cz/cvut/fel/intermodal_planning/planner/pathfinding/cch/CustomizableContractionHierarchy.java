@@ -0,0 +1,225 @@
+package cz.cvut.fel.intermodal_planning.planner.pathfinding.cch;
+
+import cz.cvut.fel.intermodal_planning.graph.model.CSRGraph;
+import cz.cvut.fel.intermodal_planning.planner.model.TransportMode;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.ModeStates;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.RoutingMetric;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.queue.FourAryHeap;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Metric-independent part of the customizable contraction hierarchy over the mode-expanded graph (see ModeStates).
+ * <p>
+ * States are ordered by the minimum degree heuristic on the undirected topology, where every edge of the graph
+ * connects each slot of its source to the mode state of its target regardless of the transfer rules. States are
+ * contracted without witness search, so the arcs (with all the fill-in) are valid for any RoutingMetric and only
+ * the customization has to be repeated when the metric changes.
+ */
+public class CustomizableContractionHierarchy implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private static final Logger logger = LogManager.getLogger(CustomizableContractionHierarchy.class);
+
+    private static final int INITIAL_ADJACENCY_SIZE = 4;
+
+    final long graphFingerprint;
+    final int stateCount;
+    final int[] rank;
+
+    /**
+     * Arcs from the state to its higher ranked neighbours occupy [upOffset[state], upOffset[state + 1]),
+     * they are sorted by the target state
+     */
+    final int[] upOffset;
+    final int[] upTarget;
+    final int[] arcLow;
+
+    private CustomizableContractionHierarchy(long graphFingerprint, int[] rank, int[][] upNeighbours, int[] upSize) {
+        this.graphFingerprint = graphFingerprint;
+        this.stateCount = rank.length;
+        this.rank = rank;
+
+        upOffset = new int[stateCount + 1];
+        for (int state = 0; state < stateCount; state++) {
+            upOffset[state + 1] = upOffset[state] + upSize[state];
+        }
+        upTarget = new int[upOffset[stateCount]];
+        arcLow = new int[upOffset[stateCount]];
+        for (int state = 0; state < stateCount; state++) {
+            System.arraycopy(upNeighbours[state], 0, upTarget, upOffset[state], upSize[state]);
+            Arrays.sort(upTarget, upOffset[state], upOffset[state + 1]);
+            Arrays.fill(arcLow, upOffset[state], upOffset[state + 1], state);
+        }
+    }
+
+    /**
+     * Metric-independent ordering and contraction
+     *
+     * @param graph CSR graph
+     * @return CustomizableContractionHierarchy instance
+     */
+    public static CustomizableContractionHierarchy build(CSRGraph graph) {
+        logger.info("Creating customizable contraction hierarchy...");
+
+        int stateCount = ModeStates.stateCount(graph);
+        int[][] adjacency = new int[stateCount][];
+        int[] adjacencySize = new int[stateCount];
+        for (int state = 0; state < stateCount; state++) {
+            adjacency[state] = new int[INITIAL_ADJACENCY_SIZE];
+        }
+
+        int[] marks = new int[stateCount];
+        Arrays.fill(marks, -1);
+        forEachStateEdge(graph, (from, to, edge) -> {
+            if (from != to && !contains(adjacency[from], adjacencySize[from], to)) {
+                add(adjacency, adjacencySize, from, to);
+                add(adjacency, adjacencySize, to, from);
+            }
+        });
+
+        FourAryHeap queue = new FourAryHeap(stateCount);
+        for (int state = 0; state < stateCount; state++) {
+            queue.insert(state, adjacencySize[state]);
+        }
+
+        int[] rank = new int[stateCount];
+        int[][] upNeighbours = new int[stateCount][];
+        int[] upSize = new int[stateCount];
+        int order = 0;
+        long arcCount = 0;
+
+        while (!queue.isEmpty()) {
+            int state = queue.pollMin();
+
+            // lazy update, state is eliminated only whether its degree is still the minimum
+            if (!queue.isEmpty() && adjacencySize[state] > queue.peekMinKey()) {
+                queue.insert(state, adjacencySize[state]);
+                continue;
+            }
+
+            rank[state] = order++;
+            int[] neighbours = Arrays.copyOf(adjacency[state], adjacencySize[state]);
+            upNeighbours[state] = neighbours;
+            upSize[state] = neighbours.length;
+            arcCount += neighbours.length;
+
+            // eliminated state is removed and its remaining neighbours form a clique
+            for (int neighbour : neighbours) {
+                remove(adjacency, adjacencySize, neighbour, state);
+            }
+            for (int neighbour : neighbours) {
+                for (int i = 0; i < adjacencySize[neighbour]; i++) {
+                    marks[adjacency[neighbour][i]] = neighbour;
+                }
+                for (int other : neighbours) {
+                    if (other != neighbour && marks[other] != neighbour) {
+                        add(adjacency, adjacencySize, neighbour, other);
+                    }
+                }
+                if (adjacencySize[neighbour] < queue.getKey(neighbour)) {
+                    queue.decreaseKey(neighbour, adjacencySize[neighbour]);
+                }
+            }
+            adjacency[state] = null;
+
+            if (order % 100000 == 0) logger.info("Eliminated " + order + " of " + stateCount + " states");
+        }
+
+        logger.info("Customizable contraction hierarchy created, " + arcCount + " arcs");
+        return new CustomizableContractionHierarchy(graph.getFingerprint(), rank, upNeighbours, upSize);
+    }
+
+    /**
+     * Customization of the arc weights for the metric
+     *
+     * @param graph CSR graph the hierarchy was built for
+     * @param metric RoutingMetric
+     * @return CCHMetric with the customized weights
+     */
+    public CCHMetric customize(CSRGraph graph, RoutingMetric metric) {
+        return new CCHMetric(this, graph, metric);
+    }
+
+    /**
+     * Check whether the hierarchy was built for the given graph
+     *
+     * @param graph CSR graph
+     * @return true whether the hierarchy can be used with the graph
+     */
+    public boolean isBuiltFor(CSRGraph graph) {
+        return graphFingerprint == graph.getFingerprint();
+    }
+
+    public int getStateCount() {
+        return stateCount;
+    }
+
+    public int getArcCount() {
+        return upTarget.length;
+    }
+
+    /**
+     * Arc between two adjacent states
+     *
+     * @return arc index or -1 whether the states are not adjacent
+     */
+    int findArc(int state, int otherState) {
+        int low = rank[state] < rank[otherState] ? state : otherState;
+        int high = low == state ? otherState : state;
+
+        int idx = Arrays.binarySearch(upTarget, upOffset[low], upOffset[low + 1], high);
+        return idx < 0 ? -1 : idx;
+    }
+
+    /**
+     * Every edge of the graph leads from each slot of its source to the mode state of its target
+     */
+    static void forEachStateEdge(CSRGraph graph, StateEdgeConsumer consumer) {
+        boolean[] availableModes = new boolean[CSRGraph.MODE_COUNT];
+        for (TransportMode mode : TransportMode.availableModes()) {
+            availableModes[mode.ordinal()] = true;
+        }
+
+        for (int edge = 0; edge < graph.getEdgeCount(); edge++) {
+            int mode = graph.getEdgeMode(edge);
+            if (!availableModes[mode]) continue;
+
+            int to = ModeStates.state(graph.getEdgeTarget(edge), mode);
+            for (int prevSlot = 0; prevSlot < ModeStates.SLOT_COUNT; prevSlot++) {
+                if (prevSlot != ModeStates.NO_MODE && !availableModes[prevSlot]) continue;
+                consumer.accept(ModeStates.state(graph.getEdgeSource(edge), prevSlot), to, edge);
+            }
+        }
+    }
+
+    interface StateEdgeConsumer {
+        void accept(int fromState, int toState, int edge);
+    }
+
+    private static boolean contains(int[] neighbours, int size, int state) {
+        for (int i = 0; i < size; i++) {
+            if (neighbours[i] == state) return true;
+        }
+        return false;
+    }
+
+    private static void add(int[][] adjacency, int[] adjacencySize, int state, int neighbour) {
+        if (adjacencySize[state] == adjacency[state].length) {
+            adjacency[state] = Arrays.copyOf(adjacency[state], adjacency[state].length * 2);
+        }
+        adjacency[state][adjacencySize[state]++] = neighbour;
+    }
+
+    private static void remove(int[][] adjacency, int[] adjacencySize, int state, int neighbour) {
+        int[] neighbours = adjacency[state];
+        for (int i = 0; i < adjacencySize[state]; i++) {
+            if (neighbours[i] == neighbour) {
+                neighbours[i] = neighbours[--adjacencySize[state]];
+                return;
+            }
+        }
+    }
+}
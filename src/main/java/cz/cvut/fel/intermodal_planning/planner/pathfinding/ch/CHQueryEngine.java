@@ -0,0 +1,98 @@
+package cz.cvut.fel.intermodal_planning.planner.pathfinding.ch;
+
+import com.umotional.basestructures.Node;
+import cz.cvut.fel.intermodal_planning.general.Storage;
+import cz.cvut.fel.intermodal_planning.graph.model.CSRGraph;
+import cz.cvut.fel.intermodal_planning.planner.RoutePlanner;
+import cz.cvut.fel.intermodal_planning.planner.model.TransportMode;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.enums.PriorityQueueType;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bidirectional upward search (see UpwardSearchEngine) in the ContractionHierarchy with the default weights.
+ */
+public class CHQueryEngine<TNode extends Node> extends UpwardSearchEngine<TNode> {
+    private final ContractionHierarchy hierarchy;
+
+    public CHQueryEngine(ContractionHierarchy hierarchy, CSRGraph graph) {
+        this(hierarchy, graph, Storage.PRIORITY_QUEUE_TYPE);
+    }
+
+    public CHQueryEngine(ContractionHierarchy hierarchy, CSRGraph graph, PriorityQueueType queueType) {
+        super(graph, queueType);
+        this.hierarchy = hierarchy;
+    }
+
+    /**
+     * Check whether the hierarchy can answer query restricted to given modes
+     *
+     * @param availableModes List of transport modes, which are allowed to use
+     * @return true whether the modes are exactly TransportMode.availableModes()
+     */
+    public static boolean supports(TransportMode... availableModes) {
+        boolean[] allowed = new boolean[CSRGraph.MODE_COUNT];
+        for (TransportMode mode : availableModes) {
+            allowed[mode.ordinal()] = true;
+        }
+
+        int allowedCount = 0;
+        for (boolean isAllowed : allowed) {
+            if (isAllowed) allowedCount++;
+        }
+        for (TransportMode mode : TransportMode.availableModes()) {
+            if (!allowed[mode.ordinal()]) return false;
+        }
+        return allowedCount == TransportMode.availableModes().length;
+    }
+
+    @Override
+    protected long distanceDuration(TransportMode mode, double distance) {
+        return RoutePlanner.getDistanceDuration(mode, distance);
+    }
+
+    @Override
+    protected void relaxArcs(int state, long duration, boolean isForward) {
+        if (isForward) {
+            for (int i = hierarchy.upOffset[state]; i < hierarchy.upOffset[state + 1]; i++) {
+                int edge = hierarchy.upEdge[i];
+                update(forward, hierarchy.edgeTo[edge], duration + hierarchy.edgeWeight[edge], edge);
+            }
+        } else {
+            for (int i = hierarchy.downOffset[state]; i < hierarchy.downOffset[state + 1]; i++) {
+                int edge = hierarchy.downEdge[i];
+                update(backward, hierarchy.edgeFrom[edge], duration + hierarchy.edgeWeight[edge], edge);
+            }
+        }
+    }
+
+    @Override
+    protected int[] buildEdgePath() {
+        List<Integer> upwardEdges = new ArrayList<>();
+        for (int state = bestState; forward.getEdge(state) != -1; state = hierarchy.edgeFrom[forward.getEdge(state)]) {
+            upwardEdges.add(forward.getEdge(state));
+        }
+
+        List<Integer> path = new ArrayList<>();
+        for (int i = upwardEdges.size() - 1; i >= 0; i--) {
+            unpack(upwardEdges.get(i), path);
+        }
+        for (int state = bestState; backward.getEdge(state) != -1; state = hierarchy.edgeTo[backward.getEdge(state)]) {
+            unpack(backward.getEdge(state), path);
+        }
+        return path.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Replacement of shortcut by the original graph edges
+     */
+    private void unpack(int edge, List<Integer> path) {
+        if (hierarchy.edgeGraphEdge[edge] != -1) {
+            path.add(hierarchy.edgeGraphEdge[edge]);
+        } else {
+            unpack(hierarchy.edgeFirstChild[edge], path);
+            unpack(hierarchy.edgeSecondChild[edge], path);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package cz.cvut.fel.intermodal_planning.planner.pathfinding.ch;
+
+import cz.cvut.fel.intermodal_planning.graph.model.CSRGraph;
+
+import java.io.Serializable;
+
+/**
+ * Contraction Hierarchy over the mode-expanded graph (see ModeStates).
+ * <p>
+ * Every CH edge either represents an edge of the CSRGraph entered from a particular mode slot (its weight contains
+ * the transfer penalty), or it is a shortcut over two CH edges. Upward edges are stored at their source for forward
+ * searches, downward edges are stored at their target for backward searches, so both searches only go up in rank.
+ */
+public class ContractionHierarchy implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    final long graphFingerprint;
+    final int stateCount;
+    final int[] rank;
+
+    final int[] edgeFrom;
+    final int[] edgeTo;
+    final int[] edgeWeight;
+    final int[] edgeGraphEdge;
+    final int[] edgeFirstChild;
+    final int[] edgeSecondChild;
+
+    final int[] upOffset;
+    final int[] upEdge;
+    final int[] downOffset;
+    final int[] downEdge;
+
+    ContractionHierarchy(long graphFingerprint, int[] rank, int edgeCount, int[] edgeFrom, int[] edgeTo, int[] edgeWeight,
+                         int[] edgeGraphEdge, int[] edgeFirstChild, int[] edgeSecondChild, boolean[] activeEdge) {
+        this.graphFingerprint = graphFingerprint;
+        this.stateCount = rank.length;
+        this.rank = rank;
+        this.edgeFrom = edgeFrom;
+        this.edgeTo = edgeTo;
+        this.edgeWeight = edgeWeight;
+        this.edgeGraphEdge = edgeGraphEdge;
+        this.edgeFirstChild = edgeFirstChild;
+        this.edgeSecondChild = edgeSecondChild;
+
+        upOffset = new int[stateCount + 1];
+        downOffset = new int[stateCount + 1];
+        for (int e = 0; e < edgeCount; e++) {
+            if (!activeEdge[e]) continue;
+            if (rank[edgeFrom[e]] < rank[edgeTo[e]]) upOffset[edgeFrom[e] + 1]++;
+            else downOffset[edgeTo[e] + 1]++;
+        }
+        for (int s = 0; s < stateCount; s++) {
+            upOffset[s + 1] += upOffset[s];
+            downOffset[s + 1] += downOffset[s];
+        }
+
+        upEdge = new int[upOffset[stateCount]];
+        downEdge = new int[downOffset[stateCount]];
+        int[] upPosition = new int[stateCount];
+        int[] downPosition = new int[stateCount];
+        System.arraycopy(upOffset, 0, upPosition, 0, stateCount);
+        System.arraycopy(downOffset, 0, downPosition, 0, stateCount);
+
+        for (int e = 0; e < edgeCount; e++) {
+            if (!activeEdge[e]) continue;
+            if (rank[edgeFrom[e]] < rank[edgeTo[e]]) upEdge[upPosition[edgeFrom[e]]++] = e;
+            else downEdge[downPosition[edgeTo[e]]++] = e;
+        }
+    }
+
+    /**
+     * Preprocessing of the hierarchy
+     *
+     * @param graph CSR graph
+     * @return ContractionHierarchy instance
+     */
+    public static ContractionHierarchy build(CSRGraph graph) {
+        return new ContractionHierarchyBuilder(graph).build();
+    }
+
+    /**
+     * Check whether the hierarchy was built for the given graph
+     *
+     * @param graph CSR graph
+     * @return true whether the hierarchy can be used with the graph
+     */
+    public boolean isBuiltFor(CSRGraph graph) {
+        return graphFingerprint == graph.getFingerprint();
+    }
+
+    public int getStateCount() {
+        return stateCount;
+    }
+
+    public int getRank(int state) {
+        return rank[state];
+    }
+
+    public int getShortcutCount() {
+        int count = 0;
+        for (int e : upEdge) if (edgeGraphEdge[e] == -1) count++;
+        for (int e : downEdge) if (edgeGraphEdge[e] == -1) count++;
+        return count;
+    }
+}
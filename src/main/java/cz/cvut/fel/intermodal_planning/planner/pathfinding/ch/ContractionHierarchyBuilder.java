@@ -0,0 +1,309 @@
+package cz.cvut.fel.intermodal_planning.planner.pathfinding.ch;
+
+import cz.cvut.fel.intermodal_planning.graph.model.CSRGraph;
+import cz.cvut.fel.intermodal_planning.planner.model.TransportMode;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.ModeStates;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.queue.FourAryHeap;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import java.util.Arrays;
+
+/**
+ * Node contraction of the mode-expanded graph.
+ * <p>
+ * States are contracted in order of edge difference plus number of contracted neighbours, priorities are updated lazily.
+ * Shortcut is inserted whether a local witness search limited by WITNESS_SETTLE_LIMIT does not find a path
+ * at most as long as the path over the contracted state.
+ */
+class ContractionHierarchyBuilder {
+    private static final Logger logger = LogManager.getLogger(ContractionHierarchyBuilder.class);
+
+    private static final int WITNESS_SETTLE_LIMIT = 500;
+    private static final int INITIAL_ADJACENCY_SIZE = 4;
+
+    private final CSRGraph graph;
+    private final int stateCount;
+
+    private int edgeCount;
+    private int[] edgeFrom;
+    private int[] edgeTo;
+    private int[] edgeWeight;
+    private int[] edgeGraphEdge;
+    private int[] edgeFirstChild;
+    private int[] edgeSecondChild;
+    private boolean[] activeEdge;
+
+    private final int[][] outAdjacency;
+    private final int[] outSize;
+    private final int[][] inAdjacency;
+    private final int[] inSize;
+
+    private final boolean[] contracted;
+    private final int[] rank;
+    private final int[] deletedNeighbours;
+
+    private final FourAryHeap witnessQueue;
+    private final long[] witnessDurations;
+    private final int[] witnessStamps;
+    private int witnessStamp;
+
+    ContractionHierarchyBuilder(CSRGraph graph) {
+        this.graph = graph;
+        stateCount = ModeStates.stateCount(graph);
+
+        int initialEdgeCapacity = Math.max(16, graph.getEdgeCount() * 2);
+        edgeFrom = new int[initialEdgeCapacity];
+        edgeTo = new int[initialEdgeCapacity];
+        edgeWeight = new int[initialEdgeCapacity];
+        edgeGraphEdge = new int[initialEdgeCapacity];
+        edgeFirstChild = new int[initialEdgeCapacity];
+        edgeSecondChild = new int[initialEdgeCapacity];
+        activeEdge = new boolean[initialEdgeCapacity];
+
+        outAdjacency = new int[stateCount][];
+        outSize = new int[stateCount];
+        inAdjacency = new int[stateCount][];
+        inSize = new int[stateCount];
+
+        contracted = new boolean[stateCount];
+        rank = new int[stateCount];
+        deletedNeighbours = new int[stateCount];
+
+        witnessQueue = new FourAryHeap(stateCount);
+        witnessDurations = new long[stateCount];
+        witnessStamps = new int[stateCount];
+    }
+
+    ContractionHierarchy build() {
+        logger.info("Creating contraction hierarchy...");
+        createStateEdges();
+
+        FourAryHeap queue = new FourAryHeap(stateCount);
+        for (int state = 0; state < stateCount; state++) {
+            queue.insert(state, priority(state));
+        }
+
+        int order = 0;
+        while (!queue.isEmpty()) {
+            int state = queue.pollMin();
+
+            // lazy update, state is contracted only whether it is still the minimum
+            long priority = priority(state);
+            if (!queue.isEmpty() && priority > queue.peekMinKey()) {
+                queue.insert(state, priority);
+                continue;
+            }
+
+            contract(state);
+            rank[state] = order++;
+
+            if (order % 100000 == 0) logger.info("Contracted " + order + " of " + stateCount + " states");
+        }
+
+        logger.info("Contraction hierarchy created, " + edgeCount + " edges");
+        return new ContractionHierarchy(graph.getFingerprint(), rank, edgeCount, edgeFrom, edgeTo, edgeWeight,
+                edgeGraphEdge, edgeFirstChild, edgeSecondChild, activeEdge);
+    }
+
+    /**
+     * Edge of the graph is represented by one CH edge for every mode slot, from which the edge can be entered.
+     * Only edges of TransportMode.availableModes() are contained.
+     */
+    private void createStateEdges() {
+        boolean[] availableModes = new boolean[CSRGraph.MODE_COUNT];
+        for (TransportMode mode : TransportMode.availableModes()) {
+            availableModes[mode.ordinal()] = true;
+        }
+
+        for (int edge = 0; edge < graph.getEdgeCount(); edge++) {
+            int from = graph.getEdgeSource(edge);
+            int mode = graph.getEdgeMode(edge);
+            if (!availableModes[mode]) continue;
+
+            int stateTo = ModeStates.state(graph.getEdgeTarget(edge), mode);
+
+            for (int slot = 0; slot < ModeStates.SLOT_COUNT; slot++) {
+                int transferCost = ModeStates.transferCost(slot, mode);
+                if (transferCost < 0 || !isReachable(from, slot)) continue;
+
+                addEdge(ModeStates.state(from, slot), stateTo, graph.getEdgeDuration(edge) + transferCost, edge, -1, -1);
+            }
+        }
+    }
+
+    /**
+     * State (node, slot) exists whether it is the origin state or the node has incoming edge of the mode
+     */
+    private boolean isReachable(int nodeId, int slot) {
+        if (slot == ModeStates.NO_MODE) return true;
+
+        for (int i = graph.getInBegin(nodeId); i < graph.getInEnd(nodeId); i++) {
+            if (graph.getEdgeMode(graph.getInEdge(i)) == slot) return true;
+        }
+        return false;
+    }
+
+    private long priority(int state) {
+        int degree = 0;
+        for (int i = 0; i < inSize[state]; i++) {
+            if (!contracted[edgeFrom[inAdjacency[state][i]]]) degree++;
+        }
+        for (int i = 0; i < outSize[state]; i++) {
+            if (!contracted[edgeTo[outAdjacency[state][i]]]) degree++;
+        }
+
+        return 2L * (processShortcuts(state, false) - degree) + deletedNeighbours[state];
+    }
+
+    private void contract(int state) {
+        processShortcuts(state, true);
+        contracted[state] = true;
+
+        for (int i = 0; i < inSize[state]; i++) {
+            deletedNeighbours[edgeFrom[inAdjacency[state][i]]]++;
+        }
+        for (int i = 0; i < outSize[state]; i++) {
+            deletedNeighbours[edgeTo[outAdjacency[state][i]]]++;
+        }
+    }
+
+    /**
+     * Shortcuts needed by the state's contraction
+     *
+     * @param state contracted state
+     * @param insert whether the shortcuts are inserted or only counted
+     * @return number of shortcuts
+     */
+    private int processShortcuts(int state, boolean insert) {
+        int shortcutCount = 0;
+
+        for (int i = 0; i < inSize[state]; i++) {
+            int inEdge = inAdjacency[state][i];
+            int source = edgeFrom[inEdge];
+            if (contracted[source]) continue;
+
+            long maxWeight = 0;
+            for (int j = 0; j < outSize[state]; j++) {
+                int outEdge = outAdjacency[state][j];
+                if (contracted[edgeTo[outEdge]] || edgeTo[outEdge] == source) continue;
+                maxWeight = Math.max(maxWeight, (long) edgeWeight[inEdge] + edgeWeight[outEdge]);
+            }
+            if (maxWeight == 0 && outSize[state] == 0) continue;
+
+            witnessSearch(source, state, maxWeight);
+
+            for (int j = 0; j < outSize[state]; j++) {
+                int outEdge = outAdjacency[state][j];
+                int target = edgeTo[outEdge];
+                if (contracted[target] || target == source) continue;
+
+                long weight = (long) edgeWeight[inEdge] + edgeWeight[outEdge];
+                if (witnessDuration(target) <= weight) continue;
+
+                shortcutCount++;
+                if (insert) addShortcut(source, target, (int) weight, inEdge, outEdge);
+            }
+        }
+        return shortcutCount;
+    }
+
+    /**
+     * Dijkstra's algorithm from the source over uncontracted states avoiding the contracted one
+     */
+    private void witnessSearch(int source, int avoidedState, long maxWeight) {
+        witnessStamp++;
+        witnessQueue.clear();
+
+        witnessDurations[source] = 0;
+        witnessStamps[source] = witnessStamp;
+        witnessQueue.insert(source, 0);
+
+        int settledCount = 0;
+        while (!witnessQueue.isEmpty() && witnessQueue.peekMinKey() <= maxWeight && settledCount++ < WITNESS_SETTLE_LIMIT) {
+            long duration = witnessQueue.peekMinKey();
+            int state = witnessQueue.pollMin();
+
+            for (int i = 0; i < outSize[state]; i++) {
+                int edge = outAdjacency[state][i];
+                int target = edgeTo[edge];
+                if (contracted[target] || target == avoidedState) continue;
+
+                long newDuration = duration + edgeWeight[edge];
+                if (newDuration < witnessDuration(target)) {
+                    witnessDurations[target] = newDuration;
+                    if (witnessQueue.contains(target)) {
+                        witnessQueue.decreaseKey(target, newDuration);
+                    } else if (witnessStamps[target] != witnessStamp) {
+                        witnessStamps[target] = witnessStamp;
+                        witnessQueue.insert(target, newDuration);
+                    }
+                }
+            }
+        }
+    }
+
+    private long witnessDuration(int state) {
+        return witnessStamps[state] == witnessStamp ? witnessDurations[state] : Long.MAX_VALUE;
+    }
+
+    /**
+     * Insertion of shortcut, parallel edge is replaced whether the shortcut is shorter
+     */
+    private void addShortcut(int from, int to, int weight, int firstChild, int secondChild) {
+        for (int i = 0; i < outSize[from]; i++) {
+            int edge = outAdjacency[from][i];
+            if (edgeTo[edge] != to) continue;
+            if (edgeWeight[edge] <= weight) return;
+
+            // replaced edge stays valid for unpacking of shortcuts which already refer to it
+            activeEdge[edge] = false;
+            removeFromAdjacency(inAdjacency[to], inSize, to, edge);
+            removeFromAdjacency(outAdjacency[from], outSize, from, edge);
+            break;
+        }
+        addEdge(from, to, weight, -1, firstChild, secondChild);
+    }
+
+    private void addEdge(int from, int to, int weight, int graphEdge, int firstChild, int secondChild) {
+        if (edgeCount == edgeFrom.length) {
+            int capacity = edgeCount * 2;
+            edgeFrom = Arrays.copyOf(edgeFrom, capacity);
+            edgeTo = Arrays.copyOf(edgeTo, capacity);
+            edgeWeight = Arrays.copyOf(edgeWeight, capacity);
+            edgeGraphEdge = Arrays.copyOf(edgeGraphEdge, capacity);
+            edgeFirstChild = Arrays.copyOf(edgeFirstChild, capacity);
+            edgeSecondChild = Arrays.copyOf(edgeSecondChild, capacity);
+            activeEdge = Arrays.copyOf(activeEdge, capacity);
+        }
+
+        int edge = edgeCount++;
+        edgeFrom[edge] = from;
+        edgeTo[edge] = to;
+        edgeWeight[edge] = weight;
+        edgeGraphEdge[edge] = graphEdge;
+        edgeFirstChild[edge] = firstChild;
+        edgeSecondChild[edge] = secondChild;
+        activeEdge[edge] = true;
+
+        outAdjacency[from] = appendToAdjacency(outAdjacency[from], outSize[from]++, edge);
+        inAdjacency[to] = appendToAdjacency(inAdjacency[to], inSize[to]++, edge);
+    }
+
+    private static int[] appendToAdjacency(int[] adjacency, int size, int edge) {
+        if (adjacency == null) adjacency = new int[INITIAL_ADJACENCY_SIZE];
+        else if (size == adjacency.length) adjacency = Arrays.copyOf(adjacency, size * 2);
+
+        adjacency[size] = edge;
+        return adjacency;
+    }
+
+    private static void removeFromAdjacency(int[] adjacency, int[] sizes, int state, int edge) {
+        for (int i = 0; i < sizes[state]; i++) {
+            if (adjacency[i] == edge) {
+                adjacency[i] = adjacency[--sizes[state]];
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package cz.cvut.fel.intermodal_planning.planner.pathfinding.ch;
+
+import com.umotional.basestructures.Node;
+import cz.cvut.fel.intermodal_planning.graph.model.CSRGraph;
+import cz.cvut.fel.intermodal_planning.planner.RoutePlanner;
+import cz.cvut.fel.intermodal_planning.planner.model.Location;
+import cz.cvut.fel.intermodal_planning.planner.model.TransportMode;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.ModeStates;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Hub labels derived from the ContractionHierarchy order.
+ * <p>
+ * Forward label of a state holds durations to the hubs of its upward search space, backward label holds durations
+ * from them. Labels are computed in descending rank from labels of the upward neighbours, entries which are not
+ * shortest durations (they are shorter over another hub of the label) are pruned. Duration between two states
+ * is the minimum over the common hubs of their labels, so no graph search is needed.
+ * Only forward labels of origin states (node, NO_MODE) and backward labels of destination states (node, mode) are kept.
+ */
+public class HubLabels implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private static final Logger logger = LogManager.getLogger(HubLabels.class);
+
+    private static final long INFINITY = Long.MAX_VALUE;
+
+    private final long graphFingerprint;
+
+    /**
+     * Label of the state occupies [offset[state], offset[state + 1]), entries are sorted by hub
+     */
+    private final int[] forwardOffset;
+    private final int[] forwardHub;
+    private final int[] forwardDuration;
+    private final int[] backwardOffset;
+    private final int[] backwardHub;
+    private final int[] backwardDuration;
+
+    private HubLabels(long graphFingerprint, int[][] forwardLabels, int[][] backwardLabels) {
+        this.graphFingerprint = graphFingerprint;
+
+        int stateCount = forwardLabels.length;
+        forwardOffset = new int[stateCount + 1];
+        backwardOffset = new int[stateCount + 1];
+        for (int state = 0; state < stateCount; state++) {
+            boolean isOrigin = ModeStates.slot(state) == ModeStates.NO_MODE;
+            forwardOffset[state + 1] = forwardOffset[state] + (isOrigin ? forwardLabels[state].length / 2 : 0);
+            backwardOffset[state + 1] = backwardOffset[state] + (isOrigin ? 0 : backwardLabels[state].length / 2);
+        }
+
+        forwardHub = new int[forwardOffset[stateCount]];
+        forwardDuration = new int[forwardOffset[stateCount]];
+        backwardHub = new int[backwardOffset[stateCount]];
+        backwardDuration = new int[backwardOffset[stateCount]];
+        for (int state = 0; state < stateCount; state++) {
+            copyLabel(forwardLabels[state], forwardOffset[state], forwardOffset[state + 1], forwardHub, forwardDuration);
+            copyLabel(backwardLabels[state], backwardOffset[state], backwardOffset[state + 1], backwardHub, backwardDuration);
+        }
+    }
+
+    /**
+     * Computation of the labels
+     *
+     * @param hierarchy ContractionHierarchy of the graph
+     * @return HubLabels instance
+     */
+    public static HubLabels create(ContractionHierarchy hierarchy) {
+        logger.info("Creating hub labels...");
+
+        int stateCount = hierarchy.stateCount;
+        int[] order = new int[stateCount];
+        for (int state = 0; state < stateCount; state++) {
+            order[hierarchy.rank[state]] = state;
+        }
+
+        // labels under construction are [hub, duration] pairs
+        int[][] forwardLabels = new int[stateCount][];
+        int[][] backwardLabels = new int[stateCount][];
+        long[] candidates = new long[stateCount];
+        int[] touched = new int[stateCount];
+        Arrays.fill(candidates, INFINITY);
+
+        for (int i = stateCount - 1; i >= 0; i--) {
+            int state = order[i];
+            forwardLabels[state] = createLabel(hierarchy, state, true, forwardLabels, backwardLabels, candidates, touched);
+            backwardLabels[state] = createLabel(hierarchy, state, false, backwardLabels, forwardLabels, candidates, touched);
+        }
+
+        HubLabels hubLabels = new HubLabels(hierarchy.graphFingerprint, forwardLabels, backwardLabels);
+        logger.info("Hub labels created, " + (hubLabels.forwardHub.length + hubLabels.backwardHub.length) + " entries");
+        return hubLabels;
+    }
+
+    /**
+     * Check whether the labels were computed for the given graph
+     *
+     * @param graph CSR graph
+     * @return true whether the labels can be used with the graph
+     */
+    public boolean isBuiltFor(CSRGraph graph) {
+        return graphFingerprint == graph.getFingerprint();
+    }
+
+    /**
+     * Duration of the best intermodal path between the snapped nodes, all available modes are allowed
+     *
+     * @param graph CSR graph the labels were computed for
+     * @param origin Origin Location
+     * @param destination Destination Location
+     * @param originNodes List of Nodes, FROM which the path is searched
+     * @param destinationNodes List of Nodes, TO which the path is searched
+     * @return duration in seconds including access and egress, -1 whether there is no path
+     */
+    public <TNode extends Node> long queryDuration(CSRGraph graph, Location origin, Location destination,
+                                                  List<TNode> originNodes, List<TNode> destinationNodes) {
+        long best = INFINITY;
+
+        for (TNode originNode : originNodes) {
+            long originPenalty = ModeStates.accessDuration(graph, originNode.id, origin);
+            int originState = ModeStates.state(originNode.id, ModeStates.NO_MODE);
+
+            for (TNode destinationNode : destinationNodes) {
+                double destinationDistance = graph.distance(destinationNode.id, destination);
+                for (TransportMode mode : TransportMode.availableModes()) {
+                    long duration = intersect(originState, ModeStates.state(destinationNode.id, mode.ordinal()));
+                    if (duration == INFINITY) continue;
+
+                    best = Math.min(best, originPenalty + duration + RoutePlanner.getDistanceDuration(mode, destinationDistance));
+                }
+            }
+        }
+        return best == INFINITY ? -1 : best;
+    }
+
+    private long intersect(int fromState, int toState) {
+        long best = INFINITY;
+        int i = forwardOffset[fromState], iEnd = forwardOffset[fromState + 1];
+        int j = backwardOffset[toState], jEnd = backwardOffset[toState + 1];
+
+        while (i < iEnd && j < jEnd) {
+            if (forwardHub[i] < backwardHub[j]) {
+                i++;
+            } else if (forwardHub[i] > backwardHub[j]) {
+                j++;
+            } else {
+                best = Math.min(best, (long) forwardDuration[i++] + backwardDuration[j++]);
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Label of the state merged from the labels of its upward neighbours and pruned by the opposite labels of its hubs
+     */
+    private static int[] createLabel(ContractionHierarchy hierarchy, int state, boolean isForward, int[][] labels,
+                                     int[][] oppositeLabels, long[] candidates, int[] touched) {
+        int touchedCount = 0;
+        candidates[state] = 0;
+        touched[touchedCount++] = state;
+
+        int begin = isForward ? hierarchy.upOffset[state] : hierarchy.downOffset[state];
+        int end = isForward ? hierarchy.upOffset[state + 1] : hierarchy.downOffset[state + 1];
+        for (int i = begin; i < end; i++) {
+            int edge = isForward ? hierarchy.upEdge[i] : hierarchy.downEdge[i];
+            int neighbour = isForward ? hierarchy.edgeTo[edge] : hierarchy.edgeFrom[edge];
+            if (neighbour == state) continue;
+
+            int[] neighbourLabel = labels[neighbour];
+
+            for (int k = 0; k < neighbourLabel.length; k += 2) {
+                int hub = neighbourLabel[k];
+                long duration = (long) hierarchy.edgeWeight[edge] + neighbourLabel[k + 1];
+                if (duration >= candidates[hub]) continue;
+
+                if (candidates[hub] == INFINITY) touched[touchedCount++] = hub;
+                candidates[hub] = duration;
+            }
+        }
+
+        int[] hubs = Arrays.copyOf(touched, touchedCount);
+        Arrays.sort(hubs);
+
+        int[] label = new int[2 * touchedCount];
+        int size = 0;
+        for (int hub : hubs) {
+            label[size] = hub;
+            label[size + 1] = (int) Math.min(candidates[hub], Integer.MAX_VALUE);
+            size += 2;
+        }
+        for (int hub : hubs) {
+            candidates[hub] = INFINITY;
+        }
+
+        // entry is pruned whether the hub is reached faster over another hub
+        int prunedSize = 0;
+        for (int k = 0; k < size; k += 2) {
+            int hub = label[k];
+            if (hub == state || intersect(label, size, oppositeLabels[hub]) >= label[k + 1]) {
+                label[prunedSize] = hub;
+                label[prunedSize + 1] = label[k + 1];
+                prunedSize += 2;
+            }
+        }
+        return Arrays.copyOf(label, prunedSize);
+    }
+
+    private static long intersect(int[] label, int size, int[] oppositeLabel) {
+        long best = INFINITY;
+        int i = 0, j = 0;
+
+        while (i < size && j < oppositeLabel.length) {
+            if (label[i] < oppositeLabel[j]) {
+                i += 2;
+            } else if (label[i] > oppositeLabel[j]) {
+                j += 2;
+            } else {
+                best = Math.min(best, (long) label[i + 1] + oppositeLabel[j + 1]);
+                i += 2;
+                j += 2;
+            }
+        }
+        return best;
+    }
+
+    private static void copyLabel(int[] label, int begin, int end, int[] hubs, int[] durations) {
+        for (int i = begin; i < end; i++) {
+            hubs[i] = label[2 * (i - begin)];
+            durations[i] = label[2 * (i - begin) + 1];
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package cz.cvut.fel.intermodal_planning.planner.pathfinding.ch;
+
+import com.umotional.basestructures.Node;
+import cz.cvut.fel.intermodal_planning.graph.model.CSRGraph;
+import cz.cvut.fel.intermodal_planning.graph.model.GraphEdge;
+import cz.cvut.fel.intermodal_planning.planner.model.Location;
+import cz.cvut.fel.intermodal_planning.planner.model.SearchStatistics;
+import cz.cvut.fel.intermodal_planning.planner.model.TransportMode;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.ModeStates;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.PathfindingAlgorithm;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.SearchWorkspace;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.enums.PriorityQueueType;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.queue.NodePriorityQueue;
+
+import java.util.List;
+
+/**
+ * Bidirectional upward search in a hierarchy over the (node, mode) states.
+ * <p>
+ * Forward search starts in origin states (node, NO_MODE) with the walking access penalty, backward search starts
+ * in destination states (node, mode) with the egress penalty of the mode. Searches meet in identical states.
+ * Hierarchies contain edges of all available transport modes, so the engines can be used only whether all of them are allowed.
+ * Engines differ only in the arcs and weights of the hierarchy and in the unpacking of the path.
+ */
+public abstract class UpwardSearchEngine<TNode extends Node> implements PathfindingAlgorithm<TNode> {
+    protected static final long INFINITY = SearchWorkspace.INFINITY;
+
+    protected final CSRGraph graph;
+    private final PriorityQueueType queueType;
+
+    protected SearchWorkspace forward;
+    protected SearchWorkspace backward;
+
+    protected int bestState;
+    private long bestDuration;
+    protected SearchStatistics statistics = new SearchStatistics();
+
+    protected UpwardSearchEngine(CSRGraph graph, PriorityQueueType queueType) {
+        this.graph = graph;
+        this.queueType = queueType;
+    }
+
+    @Override
+    public List<GraphEdge> plan(Location origin, Location destination, List<TNode> originNodes, List<TNode> destinationNodes,
+                                TransportMode... availableModes) {
+        return graph.getGraphEdges(planEdgePath(origin, destination, originNodes, destinationNodes, availableModes));
+    }
+
+    @Override
+    public int[] planEdgePath(Location origin, Location destination, List<TNode> originNodes, List<TNode> destinationNodes,
+                              TransportMode... availableModes) {
+        if (!CHQueryEngine.supports(availableModes)) {
+            throw new IllegalArgumentException("Hierarchy query requires all available transport modes");
+        }
+        init();
+        statistics.originCandidates = originNodes.size();
+        statistics.destinationCandidates = destinationNodes.size();
+
+        for (TNode originNode : originNodes) {
+            long originPenalty = distanceDuration(TransportMode.WALK, graph.distance(originNode.id, origin));
+            update(forward, ModeStates.state(originNode.id, ModeStates.NO_MODE), originPenalty, -1);
+        }
+
+        TransportMode[] modes = TransportMode.availableModes();
+        for (TNode destinationNode : destinationNodes) {
+            double destinationDistance = graph.distance(destinationNode.id, destination);
+            for (TransportMode mode : modes) {
+                update(backward, ModeStates.state(destinationNode.id, mode.ordinal()),
+                        distanceDuration(mode, destinationDistance), -1);
+            }
+        }
+
+        // both upward searches run until their minimum exceeds the best meeting
+        NodePriorityQueue forwardQueue = forward.getQueue();
+        NodePriorityQueue backwardQueue = backward.getQueue();
+        while (true) {
+            boolean forwardActive = !forwardQueue.isEmpty() && forwardQueue.peekMinKey() < bestDuration;
+            boolean backwardActive = !backwardQueue.isEmpty() && backwardQueue.peekMinKey() < bestDuration;
+            if (!forwardActive && !backwardActive) break;
+
+            if (!backwardActive || (forwardActive && forwardQueue.peekMinKey() <= backwardQueue.peekMinKey())) {
+                settle(forwardQueue.pollMin(), true);
+            } else {
+                settle(backwardQueue.pollMin(), false);
+            }
+        }
+
+        if (bestDuration == INFINITY) return null;
+
+        long reconstructStart = System.nanoTime();
+        int[] path = buildEdgePath();
+        statistics.reconstructNanos = System.nanoTime() - reconstructStart;
+        return path;
+    }
+
+    @Override
+    public int getSettledNodeCount() {
+        return (int) statistics.settledStates;
+    }
+
+    @Override
+    public SearchStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * @param mode Transport Mode
+     * @param distance Distance in Meters
+     * @return access or egress duration in seconds given by the weights of the hierarchy
+     */
+    protected abstract long distanceDuration(TransportMode mode, double distance);
+
+    /**
+     * Relaxation of the upward arcs of the settled state (downward arcs in reverse for the backward search)
+     *
+     * @param state settled state
+     * @param duration duration of the state
+     * @param isForward whether the state was settled by the forward search
+     */
+    protected abstract void relaxArcs(int state, long duration, boolean isForward);
+
+    /**
+     * Unpacking of the path through the best meeting state
+     *
+     * @return CSRGraph edge indices of the path
+     */
+    protected abstract int[] buildEdgePath();
+
+    /**
+     * Relaxation of the state reached by the arc, -1 for the initial states
+     */
+    protected void update(SearchWorkspace workspace, int state, long duration, int arc) {
+        if (arc != -1) statistics.relaxedEdges++;
+        workspace.update(state, duration, arc, -1, statistics);
+    }
+
+    private void init() {
+        forward = SearchWorkspace.acquire(graph, queueType, SearchWorkspace.FORWARD);
+        backward = SearchWorkspace.acquire(graph, queueType, SearchWorkspace.BACKWARD);
+
+        bestDuration = INFINITY;
+        bestState = -1;
+        statistics = new SearchStatistics();
+    }
+
+    private void settle(int state, boolean isForward) {
+        statistics.settledStates++;
+
+        long forwardDuration = forward.getDuration(state);
+        long backwardDuration = backward.getDuration(state);
+        if (forwardDuration != INFINITY && backwardDuration != INFINITY && forwardDuration + backwardDuration < bestDuration) {
+            bestDuration = forwardDuration + backwardDuration;
+            bestState = state;
+        }
+
+        relaxArcs(state, isForward ? forwardDuration : backwardDuration, isForward);
+    }
+}
@@ -0,0 +1,8 @@
+package cz.cvut.fel.intermodal_planning.planner.pathfinding.enums;
+
+/**
+ * Heuristics of the pathfinding, NONE stands for plain Dijkstra's algorithm
+ */
+public enum HeuristicType {
+    NONE, HAVERSINE, LANDMARKS
+}
@@ -0,0 +1,15 @@
+package cz.cvut.fel.intermodal_planning.planner.pathfinding.enums;
+
+/**
+ * Strategies of picking landmarks for the ALT heuristic
+ */
+public enum LandmarkSelectionStrategy {
+    /**
+     * Next landmark is the node farthest from the already selected ones
+     */
+    FARTHEST,
+    /**
+     * Next landmark is a leaf of the largest shortest path subtree, which is poorly covered by the selected ones
+     */
+    AVOID
+}
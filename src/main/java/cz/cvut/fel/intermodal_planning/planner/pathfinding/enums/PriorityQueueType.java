@@ -0,0 +1,28 @@
+package cz.cvut.fel.intermodal_planning.planner.pathfinding.enums;
+
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.queue.FourAryHeap;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.queue.NodePriorityQueue;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.queue.RadixHeap;
+
+/**
+ * Priority queue implementations available for the pathfinding
+ */
+public enum PriorityQueueType {
+    FOUR_ARY_HEAP, RADIX_HEAP;
+
+    /**
+     * Creation of empty queue
+     *
+     * @param capacity upper bound (exclusive) of ids stored in the queue
+     * @return NodePriorityQueue instance
+     */
+    public NodePriorityQueue create(int capacity) {
+        switch (this) {
+            case RADIX_HEAP:
+                return new RadixHeap(capacity);
+            case FOUR_ARY_HEAP:
+            default:
+                return new FourAryHeap(capacity);
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package cz.cvut.fel.intermodal_planning.planner.pathfinding.enums;
+
+/**
+ * Pathfinding algorithms used for the route metasearch
+ */
+public enum SearchEngineType {
+    UNIDIRECTIONAL, BIDIRECTIONAL, CONTRACTION_HIERARCHIES, RESUMABLE
+}
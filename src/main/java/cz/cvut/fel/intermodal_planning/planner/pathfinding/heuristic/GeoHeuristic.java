@@ -0,0 +1,54 @@
+package cz.cvut.fel.intermodal_planning.planner.pathfinding.heuristic;
+
+import cz.cvut.fel.intermodal_planning.general.Storage;
+import cz.cvut.fel.intermodal_planning.general.utils.LocationUtils;
+import cz.cvut.fel.intermodal_planning.graph.model.CSRGraph;
+
+/**
+ * Haversine distance to the nearest target divided by the maximal speed.
+ * <p>
+ * The speed is the maximum of the fastest mode in Storage and the fastest edge of the graph,
+ * because durations returned by subplanners may be faster than the Storage speeds.
+ * <p>
+ * The heuristic is consistent only if the graph has no zero duration edge between distinct locations
+ * (see CSRGraph.hasZeroDurationEdges), estimates of the edge's nodes can differ by one second over such edge.
+ */
+public class GeoHeuristic implements Heuristic {
+    private final CSRGraph graph;
+    private final double maxSpeed;
+
+    private double[] targetLat = new double[0];
+    private double[] targetLon = new double[0];
+
+    public GeoHeuristic(CSRGraph graph) {
+        this.graph = graph;
+
+        double storageSpeed = Math.max(Math.max(Storage.CAR_SPEED_MPS, Storage.TRANSIT_SPEED_MPS),
+                Math.max(Storage.BIKE_SPEED_MPS, Storage.WALK_SPEED_MPS));
+        maxSpeed = Math.max(storageSpeed, graph.getMaxEdgeSpeed());
+    }
+
+    @Override
+    public void prepare(int[] targetNodeIds) {
+        targetLat = new double[targetNodeIds.length];
+        targetLon = new double[targetNodeIds.length];
+
+        for (int i = 0; i < targetNodeIds.length; i++) {
+            targetLat[i] = graph.getLatitude(targetNodeIds[i]);
+            targetLon[i] = graph.getLongitude(targetNodeIds[i]);
+        }
+    }
+
+    @Override
+    public long estimate(int nodeId) {
+        double lat = graph.getLatitude(nodeId);
+        double lon = graph.getLongitude(nodeId);
+
+        double minDistance = Double.MAX_VALUE;
+        for (int i = 0; i < targetLat.length; i++) {
+            minDistance = Math.min(minDistance, LocationUtils.distance(lat, targetLat[i], lon, targetLon[i]));
+        }
+
+        return targetLat.length == 0 ? 0 : (long) (minDistance / maxSpeed);
+    }
+}
@@ -0,0 +1,23 @@
+package cz.cvut.fel.intermodal_planning.planner.pathfinding.heuristic;
+
+/**
+ * Lower bound of the remaining duration used by A* search.
+ * <p>
+ * Implementation has to be consistent, i.e. estimate of a node must not exceed duration of its outgoing edge
+ * plus estimate of the edge's target, so the nodes are settled with their final duration.
+ */
+public interface Heuristic {
+
+    /**
+     * Preparation of the heuristic for the query
+     *
+     * @param targetNodeIds ids of destination nodes, estimate is computed towards the nearest of them
+     */
+    void prepare(int[] targetNodeIds);
+
+    /**
+     * @param nodeId Node id
+     * @return lower bound of duration in seconds from node to the nearest target
+     */
+    long estimate(int nodeId);
+}
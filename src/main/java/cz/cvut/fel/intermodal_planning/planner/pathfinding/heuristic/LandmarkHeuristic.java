@@ -0,0 +1,65 @@
+package cz.cvut.fel.intermodal_planning.planner.pathfinding.heuristic;
+
+/**
+ * ALT heuristic - lower bound given by the triangle inequality over the landmark distance tables.
+ * <p>
+ * Node, from which none of the targets is reachable according to the tables, is estimated as UNREACHABLE_ESTIMATE.
+ */
+public class LandmarkHeuristic implements Heuristic {
+    private static final long UNREACHABLE_ESTIMATE = Long.MAX_VALUE / 4;
+
+    private final LandmarkTables tables;
+
+    /**
+     * [target][landmark] durations of the query targets
+     */
+    private int[][] targetFromLandmark = new int[0][];
+    private int[][] targetToLandmark = new int[0][];
+
+    public LandmarkHeuristic(LandmarkTables tables) {
+        this.tables = tables;
+    }
+
+    @Override
+    public void prepare(int[] targetNodeIds) {
+        int landmarkCount = tables.getLandmarkCount();
+        targetFromLandmark = new int[targetNodeIds.length][landmarkCount];
+        targetToLandmark = new int[targetNodeIds.length][landmarkCount];
+
+        for (int t = 0; t < targetNodeIds.length; t++) {
+            for (int i = 0; i < landmarkCount; i++) {
+                targetFromLandmark[t][i] = tables.fromLandmark[i][targetNodeIds[t]];
+                targetToLandmark[t][i] = tables.toLandmark[i][targetNodeIds[t]];
+            }
+        }
+    }
+
+    @Override
+    public long estimate(int nodeId) {
+        if (targetFromLandmark.length == 0) return 0;
+
+        long minEstimate = UNREACHABLE_ESTIMATE;
+        for (int t = 0; t < targetFromLandmark.length; t++) {
+            minEstimate = Math.min(minEstimate, estimate(nodeId, targetFromLandmark[t], targetToLandmark[t]));
+        }
+        return minEstimate;
+    }
+
+    private long estimate(int nodeId, int[] targetFrom, int[] targetTo) {
+        long estimate = 0;
+        for (int i = 0; i < targetFrom.length; i++) {
+            int nodeFrom = tables.fromLandmark[i][nodeId];
+            int nodeTo = tables.toLandmark[i][nodeId];
+
+            if (targetFrom[i] != LandmarkTables.UNREACHABLE && nodeFrom != LandmarkTables.UNREACHABLE) {
+                estimate = Math.max(estimate, (long) targetFrom[i] - nodeFrom);
+            }
+            if (targetTo[i] != LandmarkTables.UNREACHABLE) {
+                // target reaches the landmark, but the node does not, so the node cannot reach the target
+                if (nodeTo == LandmarkTables.UNREACHABLE) return UNREACHABLE_ESTIMATE;
+                estimate = Math.max(estimate, (long) nodeTo - targetTo[i]);
+            }
+        }
+        return estimate;
+    }
+}
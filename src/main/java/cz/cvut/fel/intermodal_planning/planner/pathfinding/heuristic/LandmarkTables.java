@@ -0,0 +1,279 @@
+package cz.cvut.fel.intermodal_planning.planner.pathfinding.heuristic;
+
+import cz.cvut.fel.intermodal_planning.graph.model.CSRGraph;
+import cz.cvut.fel.intermodal_planning.planner.model.Location;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.enums.LandmarkSelectionStrategy;
+import cz.cvut.fel.intermodal_planning.planner.pathfinding.queue.FourAryHeap;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Landmark distance tables of the ALT heuristic.
+ * <p>
+ * Durations are computed over the plain node graph using edges of all modes and no transfer penalties,
+ * so they are lower bounds of durations of every multimodal path. Unreachable pairs are stored as UNREACHABLE.
+ */
+public class LandmarkTables implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private static final Logger logger = LogManager.getLogger(LandmarkTables.class);
+
+    public static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    private final long graphFingerprint;
+    private final int[] landmarks;
+    private final double[] landmarkLat;
+    private final double[] landmarkLon;
+
+    /**
+     * [landmark][node] duration from the landmark to the node
+     */
+    final int[][] fromLandmark;
+    /**
+     * [landmark][node] duration from the node to the landmark
+     */
+    final int[][] toLandmark;
+
+    private LandmarkTables(CSRGraph graph, int[] landmarks, int[][] fromLandmark, int[][] toLandmark) {
+        this.graphFingerprint = graph.getFingerprint();
+        this.landmarks = landmarks;
+        this.fromLandmark = fromLandmark;
+        this.toLandmark = toLandmark;
+
+        landmarkLat = new double[landmarks.length];
+        landmarkLon = new double[landmarks.length];
+        for (int i = 0; i < landmarks.length; i++) {
+            landmarkLat[i] = graph.getLatitude(landmarks[i]);
+            landmarkLon[i] = graph.getLongitude(landmarks[i]);
+        }
+    }
+
+    /**
+     * Landmark selection and computation of the distance tables
+     *
+     * @param graph CSR graph
+     * @param landmarkCount number of landmarks
+     * @param strategy LandmarkSelectionStrategy
+     * @param keptLandmarks landmarks which are kept, e.g. landmarks of the graph before its expansion
+     * @return LandmarkTables instance
+     */
+    public static LandmarkTables create(CSRGraph graph, int landmarkCount, LandmarkSelectionStrategy strategy,
+                                        int[] keptLandmarks) {
+        logger.info("Creating landmark tables...");
+
+        int[] landmarks = Arrays.copyOf(keptLandmarks, Math.max(landmarkCount, keptLandmarks.length));
+        int[][] fromLandmark = new int[landmarks.length][];
+        int[][] toLandmark = new int[landmarks.length][];
+        int selectedCount = 0;
+        Random random = new Random(graph.getFingerprint());
+        FourAryHeap heap = new FourAryHeap(graph.getNodeCount());
+
+        // tables of every landmark are computed once, when it is selected, the avoid strategy uses them as well
+        while (selectedCount < landmarks.length) {
+            if (selectedCount >= keptLandmarks.length) {
+                int landmark = strategy == LandmarkSelectionStrategy.AVOID
+                        ? selectAvoid(graph, Arrays.copyOf(landmarks, selectedCount), fromLandmark, toLandmark, heap, random)
+                        : selectFarthest(graph, Arrays.copyOf(landmarks, selectedCount), heap, random);
+                if (landmark == -1) break;
+                landmarks[selectedCount] = landmark;
+            }
+
+            int[] source = new int[]{landmarks[selectedCount]};
+            fromLandmark[selectedCount] = shortestDurations(graph, source, false, heap, null, null);
+            toLandmark[selectedCount] = shortestDurations(graph, source, true, heap, null, null);
+            selectedCount++;
+        }
+
+        LandmarkTables tables = new LandmarkTables(graph, Arrays.copyOf(landmarks, selectedCount),
+                Arrays.copyOf(fromLandmark, selectedCount), Arrays.copyOf(toLandmark, selectedCount));
+        logger.info("Landmark tables created, " + selectedCount + " landmarks");
+        return tables;
+    }
+
+    /**
+     * Check whether the tables were computed for the given graph
+     *
+     * @param graph CSR graph
+     * @return true whether the tables can be used with the graph
+     */
+    public boolean isBuiltFor(CSRGraph graph) {
+        return graphFingerprint == graph.getFingerprint();
+    }
+
+    public int getLandmarkCount() {
+        return landmarks.length;
+    }
+
+    /**
+     * Location of the landmark, which is used to find the landmark again after the graph is rebuilt
+     *
+     * @param landmarkIdx landmark index
+     * @return Location of the landmark's node
+     */
+    public Location getLandmarkLocation(int landmarkIdx) {
+        return new Location(landmarkLat[landmarkIdx], landmarkLon[landmarkIdx]);
+    }
+
+    /**
+     * Lower bound of duration between two nodes given by the triangle inequality
+     *
+     * @param fromId source node id
+     * @param toId target node id
+     * @return lower bound in seconds
+     */
+    public long lowerBound(int fromId, int toId) {
+        return lowerBound(fromLandmark, toLandmark, landmarks.length, fromId, toId);
+    }
+
+    /**
+     * Lower bound given by the tables of the first landmarkCount landmarks
+     */
+    private static long lowerBound(int[][] fromLandmark, int[][] toLandmark, int landmarkCount, int fromId, int toId) {
+        long bound = 0;
+        for (int i = 0; i < landmarkCount; i++) {
+            int[] from = fromLandmark[i];
+            int[] to = toLandmark[i];
+
+            if (from[fromId] != UNREACHABLE && from[toId] != UNREACHABLE) {
+                bound = Math.max(bound, (long) from[toId] - from[fromId]);
+            }
+            if (to[fromId] != UNREACHABLE && to[toId] != UNREACHABLE) {
+                bound = Math.max(bound, (long) to[fromId] - to[toId]);
+            }
+        }
+        return bound;
+    }
+
+    /**
+     * Node farthest from the selected landmarks, the first one is farthest from a random node
+     */
+    private static int selectFarthest(CSRGraph graph, int[] selected, FourAryHeap heap, Random random) {
+        int[] sources = selected.length > 0 ? selected : new int[]{randomNode(graph, random)};
+        if (sources[0] == -1) return -1;
+
+        int[] durations = shortestDurations(graph, sources, false, heap, null, null);
+        int farthest = -1;
+        for (int nodeId = 0; nodeId < durations.length; nodeId++) {
+            if (durations[nodeId] != UNREACHABLE && durations[nodeId] > 0
+                    && (farthest == -1 || durations[nodeId] > durations[farthest])) {
+                farthest = nodeId;
+            }
+        }
+        return farthest;
+    }
+
+    /**
+     * Avoid strategy - shortest path tree from a random root is weighted by the gap between the duration and
+     * the lower bound given by the tables of the selected landmarks, leaf of the heaviest subtree without landmark
+     * is selected
+     */
+    private static int selectAvoid(CSRGraph graph, int[] selected, int[][] fromLandmark, int[][] toLandmark,
+                                   FourAryHeap heap, Random random) {
+        int root = randomNode(graph, random);
+        if (root == -1) return -1;
+
+        int nodeCount = graph.getNodeCount();
+        int[] parentEdges = new int[nodeCount];
+        int[] settleOrder = new int[nodeCount];
+        int[] durations = shortestDurations(graph, new int[]{root}, false, heap, parentEdges, settleOrder);
+
+        boolean[] isLandmark = new boolean[nodeCount];
+        for (int landmark : selected) {
+            isLandmark[landmark] = true;
+        }
+
+        long[] size = new long[nodeCount];
+        boolean[] coveredSubtree = new boolean[nodeCount];
+        int[] heaviestChild = new int[nodeCount];
+        Arrays.fill(heaviestChild, -1);
+
+        int settledCount = 0;
+        while (settledCount < nodeCount && settleOrder[settledCount] != -1) settledCount++;
+
+        // children are settled after their parent, so the subtree sizes are final in the reverse order
+        for (int i = settledCount - 1; i >= 0; i--) {
+            int nodeId = settleOrder[i];
+            if (isLandmark[nodeId]) coveredSubtree[nodeId] = true;
+
+            if (coveredSubtree[nodeId]) {
+                size[nodeId] = 0;
+            } else {
+                size[nodeId] += durations[nodeId] - lowerBound(fromLandmark, toLandmark, selected.length, root, nodeId);
+            }
+
+            if (parentEdges[nodeId] == -1) continue;
+            int parent = graph.getEdgeSource(parentEdges[nodeId]);
+            size[parent] += size[nodeId];
+            coveredSubtree[parent] |= coveredSubtree[nodeId];
+            if (heaviestChild[parent] == -1 || size[nodeId] > size[heaviestChild[parent]]) {
+                heaviestChild[parent] = nodeId;
+            }
+        }
+
+        int leaf = root;
+        while (heaviestChild[leaf] != -1 && size[heaviestChild[leaf]] > 0) {
+            leaf = heaviestChild[leaf];
+        }
+        return isLandmark[leaf] ? -1 : leaf;
+    }
+
+    private static int randomNode(CSRGraph graph, Random random) {
+        for (int attempt = 0; attempt < graph.getNodeCount(); attempt++) {
+            int nodeId = random.nextInt(graph.getNodeCount());
+            if (graph.getOutBegin(nodeId) != graph.getOutEnd(nodeId)) return nodeId;
+        }
+        return -1;
+    }
+
+    /**
+     * Dijkstra's algorithm over all edges without transfer penalties
+     *
+     * @param graph CSR graph
+     * @param sources source node ids
+     * @param backward whether the search runs over the reverse adjacency
+     * @param heap empty heap of graph's node count capacity
+     * @param parentEdges optional array filled by the parent edges of the shortest path tree
+     * @param settleOrder optional array filled by the settled nodes in settle order terminated by -1
+     * @return durations of all nodes, UNREACHABLE for unreachable ones
+     */
+    static int[] shortestDurations(CSRGraph graph, int[] sources, boolean backward, FourAryHeap heap,
+                                   int[] parentEdges, int[] settleOrder) {
+        int[] durations = new int[graph.getNodeCount()];
+        Arrays.fill(durations, UNREACHABLE);
+        if (parentEdges != null) Arrays.fill(parentEdges, -1);
+        if (settleOrder != null) Arrays.fill(settleOrder, -1);
+
+        for (int source : sources) {
+            if (durations[source] == 0) continue;
+            durations[source] = 0;
+            heap.insert(source, 0);
+        }
+
+        int settledCount = 0;
+        while (!heap.isEmpty()) {
+            int nodeId = heap.pollMin();
+            if (settleOrder != null) settleOrder[settledCount++] = nodeId;
+
+            int begin = backward ? graph.getInBegin(nodeId) : graph.getOutBegin(nodeId);
+            int end = backward ? graph.getInEnd(nodeId) : graph.getOutEnd(nodeId);
+
+            for (int i = begin; i < end; i++) {
+                int edge = backward ? graph.getInEdge(i) : i;
+                int next = backward ? graph.getEdgeSource(edge) : graph.getEdgeTarget(edge);
+                long duration = (long) durations[nodeId] + graph.getEdgeDuration(edge);
+                if (duration >= durations[next]) continue;
+
+                boolean queued = durations[next] != UNREACHABLE;
+                durations[next] = (int) Math.min(duration, UNREACHABLE - 1);
+                if (parentEdges != null) parentEdges[next] = edge;
+
+                if (queued) heap.decreaseKey(next, durations[next]);
+                else heap.insert(next, durations[next]);
+            }
+        }
+        return durations;
+    }
+}
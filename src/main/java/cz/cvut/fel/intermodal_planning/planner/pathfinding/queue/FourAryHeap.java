@@ -0,0 +1,131 @@
+package cz.cvut.fel.intermodal_planning.planner.pathfinding.queue;
+
+import java.util.Arrays;
+
+/**
+ * Indexed 4-ary min-heap over int ids backed by primitive arrays
+ */
+public final class FourAryHeap implements NodePriorityQueue {
+    private static final int ARITY = 4;
+
+    private int[] heap;
+    private long[] keys;
+    private int[] position;
+    private int size;
+
+    public FourAryHeap(int capacity) {
+        heap = new int[Math.max(capacity, 1)];
+        keys = new long[Math.max(capacity, 1)];
+        position = new int[capacity];
+        Arrays.fill(position, -1);
+    }
+
+    @Override
+    public void insert(int id, long key) {
+        heap[size] = id;
+        keys[size] = key;
+        position[id] = size;
+        siftUp(size++);
+    }
+
+    @Override
+    public void decreaseKey(int id, long key) {
+        int pos = position[id];
+        keys[pos] = key;
+        siftUp(pos);
+    }
+
+    @Override
+    public int pollMin() {
+        int min = heap[0];
+        position[min] = -1;
+
+        if (--size > 0) {
+            heap[0] = heap[size];
+            keys[0] = keys[size];
+            position[heap[0]] = 0;
+            siftDown(0);
+        }
+        return min;
+    }
+
+    @Override
+    public long peekMinKey() {
+        return keys[0];
+    }
+
+    @Override
+    public boolean contains(int id) {
+        return position[id] != -1;
+    }
+
+    @Override
+    public long getKey(int id) {
+        return keys[position[id]];
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            position[heap[i]] = -1;
+        }
+        size = 0;
+    }
+
+    private void siftUp(int pos) {
+        int id = heap[pos];
+        long key = keys[pos];
+
+        while (pos > 0) {
+            int parent = (pos - 1) / ARITY;
+            if (keys[parent] <= key) break;
+
+            move(parent, pos);
+            pos = parent;
+        }
+        place(id, key, pos);
+    }
+
+    private void siftDown(int pos) {
+        int id = heap[pos];
+        long key = keys[pos];
+
+        while (true) {
+            int firstChild = pos * ARITY + 1;
+            if (firstChild >= size) break;
+
+            int lastChild = Math.min(firstChild + ARITY, size);
+            int minChild = firstChild;
+            for (int child = firstChild + 1; child < lastChild; child++) {
+                if (keys[child] < keys[minChild]) minChild = child;
+            }
+            if (keys[minChild] >= key) break;
+
+            move(minChild, pos);
+            pos = minChild;
+        }
+        place(id, key, pos);
+    }
+
+    private void move(int from, int to) {
+        heap[to] = heap[from];
+        keys[to] = keys[from];
+        position[heap[to]] = to;
+    }
+
+    private void place(int id, long key, int pos) {
+        heap[pos] = id;
+        keys[pos] = key;
+        position[id] = pos;
+    }
+}
@@ -0,0 +1,58 @@
+package cz.cvut.fel.intermodal_planning.planner.pathfinding.queue;
+
+/**
+ * Addressable min-priority queue of int ids with long keys used by the pathfinding.
+ * <p>
+ * Ids have to be in range {@code [0, capacity)} given to the implementation.
+ */
+public interface NodePriorityQueue {
+
+    /**
+     * Insertion of id, which is not in the queue
+     *
+     * @param id Element id
+     * @param key Priority of the element
+     */
+    void insert(int id, long key);
+
+    /**
+     * Decreasing priority of id, which is in the queue
+     *
+     * @param id Element id
+     * @param key New priority, lower or equal to the current one
+     */
+    void decreaseKey(int id, long key);
+
+    /**
+     * Removal of the element with minimal priority
+     *
+     * @return id of the removed element
+     */
+    int pollMin();
+
+    /**
+     * @return priority of the element with minimal priority
+     */
+    long peekMinKey();
+
+    /**
+     * @param id Element id
+     * @return true whether the id is in the queue
+     */
+    boolean contains(int id);
+
+    /**
+     * @param id Element id, which is in the queue
+     * @return priority of the element
+     */
+    long getKey(int id);
+
+    boolean isEmpty();
+
+    int size();
+
+    /**
+     * Removal of all elements, runs in time proportional to the current size
+     */
+    void clear();
+}
@@ -0,0 +1,145 @@
+package cz.cvut.fel.intermodal_planning.planner.pathfinding.queue;
+
+import java.util.Arrays;
+
+/**
+ * Indexed monotone radix heap over int ids with non-negative integer keys.
+ * <p>
+ * Keys of the inserted (or decreased) elements must not be lower than the key of the last removed element,
+ * which holds for Dijkstra's algorithm with non-negative edge durations. Element with key {@code k} is stored
+ * in the bucket given by the highest bit in which {@code k} differs from the last removed key.
+ */
+public final class RadixHeap implements NodePriorityQueue {
+    private static final int BUCKET_COUNT = 65;
+    private static final int INITIAL_BUCKET_SIZE = 16;
+
+    private final int[][] buckets;
+    private final int[] bucketSize;
+
+    private final long[] keys;
+    private final byte[] bucketOf;
+    private final int[] position;
+
+    private long lastKey;
+    private int size;
+
+    public RadixHeap(int capacity) {
+        buckets = new int[BUCKET_COUNT][INITIAL_BUCKET_SIZE];
+        bucketSize = new int[BUCKET_COUNT];
+
+        keys = new long[capacity];
+        bucketOf = new byte[capacity];
+        position = new int[capacity];
+        Arrays.fill(position, -1);
+    }
+
+    @Override
+    public void insert(int id, long key) {
+        keys[id] = key;
+        add(id, bucketIndex(key));
+        size++;
+    }
+
+    @Override
+    public void decreaseKey(int id, long key) {
+        int bucket = bucketIndex(key);
+        keys[id] = key;
+        if (bucket != bucketOf[id]) {
+            remove(id);
+            add(id, bucket);
+        }
+    }
+
+    @Override
+    public int pollMin() {
+        if (bucketSize[0] == 0) redistribute();
+
+        int id = buckets[0][--bucketSize[0]];
+        position[id] = -1;
+        size--;
+        return id;
+    }
+
+    @Override
+    public long peekMinKey() {
+        if (bucketSize[0] == 0) redistribute();
+        return lastKey;
+    }
+
+    @Override
+    public boolean contains(int id) {
+        return position[id] != -1;
+    }
+
+    @Override
+    public long getKey(int id) {
+        return keys[id];
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        for (int b = 0; b < BUCKET_COUNT; b++) {
+            for (int i = 0; i < bucketSize[b]; i++) {
+                position[buckets[b][i]] = -1;
+            }
+            bucketSize[b] = 0;
+        }
+        lastKey = 0;
+        size = 0;
+    }
+
+    /**
+     * Moving elements of the first non-empty bucket into lower buckets relative to its minimal key
+     */
+    private void redistribute() {
+        int b = 1;
+        while (bucketSize[b] == 0) b++;
+
+        int[] bucket = buckets[b];
+        long min = Long.MAX_VALUE;
+        for (int i = 0; i < bucketSize[b]; i++) {
+            min = Math.min(min, keys[bucket[i]]);
+        }
+        lastKey = min;
+
+        int count = bucketSize[b];
+        bucketSize[b] = 0;
+        for (int i = 0; i < count; i++) {
+            int id = bucket[i];
+            add(id, bucketIndex(keys[id]));
+        }
+    }
+
+    private int bucketIndex(long key) {
+        return key == lastKey ? 0 : 64 - Long.numberOfLeadingZeros(key ^ lastKey);
+    }
+
+    private void add(int id, int bucket) {
+        if (bucketSize[bucket] == buckets[bucket].length) {
+            buckets[bucket] = Arrays.copyOf(buckets[bucket], buckets[bucket].length * 2);
+        }
+        bucketOf[id] = (byte) bucket;
+        position[id] = bucketSize[bucket];
+        buckets[bucket][bucketSize[bucket]++] = id;
+    }
+
+    private void remove(int id) {
+        int bucket = bucketOf[id];
+        int pos = position[id];
+        int last = buckets[bucket][--bucketSize[bucket]];
+
+        buckets[bucket][pos] = last;
+        position[last] = pos;
+        position[id] = -1;
+    }
+}
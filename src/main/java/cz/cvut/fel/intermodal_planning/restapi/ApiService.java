@@ -1,15 +1,25 @@
 package cz.cvut.fel.intermodal_planning.restapi;
 
+import cz.cvut.fel.intermodal_planning.planner.model.IsochroneBand;
 import cz.cvut.fel.intermodal_planning.planner.model.Location;
 import cz.cvut.fel.intermodal_planning.planner.model.Route;
 import cz.cvut.fel.intermodal_planning.planner.model.TransportMode;
 import cz.cvut.fel.intermodal_planning.planner.PlannerInitializer;
+import cz.cvut.fel.intermodal_planning.planner.PlannerMetrics;
 import cz.cvut.fel.intermodal_planning.general.utils.GeoJSONBuilder;
 
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
+import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import java.time.LocalTime;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -28,15 +38,32 @@ public class ApiService {
     @GET
     @Path("/getIntermodalRoute")
     public Response getIntermodalRoute(@QueryParam("origin") String originStr,
-                                       @QueryParam("destination") String destinationStr) {
-        return getIntermodalRoute(originStr, destinationStr, "");
+                                       @QueryParam("destination") String destinationStr,
+                                       @DefaultValue("") @QueryParam("departureTime") String departureTimeStr,
+                                       @DefaultValue("") @QueryParam("profile") String profile,
+                                       @DefaultValue("false") @QueryParam("statistics") boolean includeStatistics) {
+        return getIntermodalRoute(originStr, destinationStr, "", departureTimeStr, profile, includeStatistics);
     }
 
+    /**
+     * Intermodal route between the origin and the destination
+     *
+     * @param originStr origin as "lat,lon"
+     * @param destinationStr destination as "lat,lon"
+     * @param availableModesStr comma separated transport modes, all modes whether empty
+     * @param departureTimeStr departure time as "HH:mm", static durations whether empty
+     * @param profile name of the cost profile, default weights whether empty
+     * @param includeStatistics whether the search statistics of the query are included in the response
+     * @return route description and GeoJSON of the route
+     */
     @GET
     @Path("/getIntermodalRouteWithMode")
     public Response getIntermodalRoute(@QueryParam("origin") String originStr,
                                        @QueryParam("destination") String destinationStr,
-                                       @QueryParam("availableModes") String availableModesStr) {
+                                       @QueryParam("availableModes") String availableModesStr,
+                                       @DefaultValue("") @QueryParam("departureTime") String departureTimeStr,
+                                       @DefaultValue("") @QueryParam("profile") String profile,
+                                       @DefaultValue("false") @QueryParam("statistics") boolean includeStatistics) {
         try {
             double[] originLoc = Arrays.stream(originStr.split(",")).mapToDouble(Double::parseDouble).toArray();
             double[] destinationLoc = Arrays.stream(destinationStr.split(",")).mapToDouble(Double::parseDouble).toArray();
@@ -49,6 +76,8 @@ public class ApiService {
 
             if (originLoc.length != 2 || destinationLoc.length != 2)
                 throw new IllegalArgumentException("origin or destination length is not 2");
+            if (!departureTimeStr.isEmpty() && !profile.isEmpty())
+                throw new IllegalArgumentException("departureTime and profile can not be combined");
 
             logger.info("Building a JSON response, args are valid...");
 
@@ -56,13 +85,22 @@ public class ApiService {
 
             Location origin = new Location(originLoc[0], originLoc[1]);
             Location destination = new Location(destinationLoc[0], destinationLoc[1]);
-            Route route = plannerInitializer.routePlanner.metasearchRoute(origin, destination, availableModes);
+            Route route;
+            if (!profile.isEmpty()) {
+                route = plannerInitializer.routePlanner.metasearchRoute(origin, destination, profile, availableModes);
+            } else if (!departureTimeStr.isEmpty()) {
+                route = plannerInitializer.routePlanner.metasearchRoute(origin, destination,
+                        LocalTime.parse(departureTimeStr).toSecondOfDay(), availableModes);
+            } else {
+                route = plannerInitializer.routePlanner.metasearchRoute(origin, destination, availableModes);
+            }
             String pathDesc = ResponseBuilder.buildRouteDescription(route);
 
             String geoJSONStr = GeoJSONBuilder.getInstance().buildGeoJSONStringForRoute(route);
 
             String resultJSON = "{" +
                     "\"description\":" + pathDesc + ","
+                    + (includeStatistics ? "\"statistics\":" + ResponseBuilder.buildSearchStatistics(route.statistics) + "," : "")
                     + "\"route\":" + geoJSONStr
                     + "}";
             String responseStr = route.isEmpty() ? "Route is empty" : resultJSON;
@@ -78,5 +116,152 @@ public class ApiService {
         }
 
     }
-}
 
+    /**
+     * Planner counters accumulated since the start of the server
+     *
+     * @return JSON object with the counters by their names
+     */
+    @GET
+    @Path("/getPlannerMetrics")
+    public Response getPlannerMetrics() {
+        return Response
+                .status(200)
+                .entity(new JSONObject(PlannerMetrics.getInstance().getSnapshot()).toString())
+                .build();
+    }
+
+    /**
+     * Duration of the intermodal route, the route itself is not built
+     *
+     * @param originStr origin as "lat,lon"
+     * @param destinationStr destination as "lat,lon"
+     * @return JSON object with "durationInSeconds", -1 whether the destination is not reachable
+     */
+    @GET
+    @Path("/getIntermodalDuration")
+    public Response getIntermodalDuration(@QueryParam("origin") String originStr,
+                                          @QueryParam("destination") String destinationStr) {
+        try {
+            double[] originLoc = Arrays.stream(originStr.split(",")).mapToDouble(Double::parseDouble).toArray();
+            double[] destinationLoc = Arrays.stream(destinationStr.split(",")).mapToDouble(Double::parseDouble).toArray();
+
+            if (originLoc.length != 2 || destinationLoc.length != 2)
+                throw new IllegalArgumentException("origin or destination length is not 2");
+
+            PlannerInitializer plannerInitializer = PlannerInitializer.getKnownInstance();
+
+            Location origin = new Location(originLoc[0], originLoc[1]);
+            Location destination = new Location(destinationLoc[0], destinationLoc[1]);
+            long duration = plannerInitializer.routePlanner.metasearchDuration(origin, destination);
+
+            return Response
+                    .status(200)
+                    .entity(new JSONObject().put("durationInSeconds", duration).toString())
+                    .build();
+        } catch (Exception e) {
+            e.printStackTrace();
+
+            return Response.serverError().build();
+        }
+    }
+
+    /**
+     * Areas reachable from the origin within the given durations
+     *
+     * @param originStr origin as "lat,lon"
+     * @param bandsStr comma separated band durations in seconds
+     * @param availableModesStr comma separated transport modes, all modes whether empty
+     * @return GeoJSON FeatureCollection with one MultiPolygon feature for each band
+     */
+    @GET
+    @Path("/getIsochrone")
+    public Response getIsochrone(@QueryParam("origin") String originStr,
+                                 @QueryParam("bands") String bandsStr,
+                                 @DefaultValue("") @QueryParam("availableModes") String availableModesStr) {
+        try {
+            double[] originLoc = Arrays.stream(originStr.split(",")).mapToDouble(Double::parseDouble).toArray();
+            long[] bandDurations = Arrays.stream(bandsStr.split(",")).mapToLong(Long::parseLong).toArray();
+            TransportMode[] availableModes = availableModesStr.isEmpty() ? new TransportMode[0] :
+                    Arrays.stream(availableModesStr.split(","))
+                            .map(TransportMode::valueOf)
+                            .toArray(TransportMode[]::new);
+
+            if (originLoc.length != 2)
+                throw new IllegalArgumentException("origin length is not 2");
+
+            logger.info("Building a JSON response, args are valid...");
+
+            PlannerInitializer plannerInitializer = PlannerInitializer.getKnownInstance();
+
+            Location origin = new Location(originLoc[0], originLoc[1]);
+            List<IsochroneBand> bands = plannerInitializer.routePlanner.metasearchIsochrone(origin, bandDurations, availableModes);
+
+            return Response
+                    .status(200)
+                    .entity(GeoJSONBuilder.getInstance().buildGeoJSONStringForIsochrone(bands))
+                    .build();
+        } catch (Exception e) {
+            e.printStackTrace();
+
+            return Response.serverError().build();
+        }
+    }
+
+    /**
+     * Duration matrix between all origins and destinations
+     *
+     * @param requestBody JSON object with "origins" and "destinations" arrays of [lat, lon] pairs
+     *                    and optional "availableModes" array of transport modes
+     * @return JSON object with "durations" matrix in seconds, -1 for unreachable pairs
+     */
+    @POST
+    @Path("/getDurationMatrix")
+    @Consumes(MediaType.APPLICATION_JSON)
+    public Response getDurationMatrix(String requestBody) {
+        try {
+            JSONObject request = new JSONObject(requestBody);
+            Location[] origins = parseLocations(request.getJSONArray("origins"));
+            Location[] destinations = parseLocations(request.getJSONArray("destinations"));
+
+            JSONArray availableModesArr = request.optJSONArray("availableModes");
+            TransportMode[] availableModes = new TransportMode[availableModesArr == null ? 0 : availableModesArr.length()];
+            for (int i = 0; i < availableModes.length; i++) {
+                availableModes[i] = TransportMode.valueOf(availableModesArr.getString(i));
+            }
+
+            logger.info("Building a JSON response, args are valid...");
+
+            PlannerInitializer plannerInitializer = PlannerInitializer.getKnownInstance();
+            long[][] durationMatrix = plannerInitializer.routePlanner.metasearchDurationMatrix(origins, destinations, availableModes);
+
+            JSONArray durations = new JSONArray();
+            for (long[] row : durationMatrix) {
+                JSONArray durationRow = new JSONArray();
+                for (long duration : row) {
+                    durationRow.put(duration);
+                }
+                durations.put(durationRow);
+            }
+
+            return Response
+                    .status(200)
+                    .entity(new JSONObject().put("durations", durations).toString())
+                    .build();
+        } catch (Exception e) {
+            e.printStackTrace();
+
+            return Response.serverError().build();
+        }
+    }
+
+    private Location[] parseLocations(JSONArray locationArr) {
+        Location[] locations = new Location[locationArr.length()];
+        for (int i = 0; i < locations.length; i++) {
+            JSONArray location = locationArr.getJSONArray(i);
+            if (location.length() != 2) throw new IllegalArgumentException("location length is not 2");
+            locations[i] = new Location(location.getDouble(0), location.getDouble(1));
+        }
+        return locations;
+    }
+}
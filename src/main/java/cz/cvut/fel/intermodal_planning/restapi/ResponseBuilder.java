@@ -2,8 +2,10 @@ package cz.cvut.fel.intermodal_planning.restapi;
 
 import cz.cvut.fel.intermodal_planning.planner.model.Leg;
 import cz.cvut.fel.intermodal_planning.planner.model.Route;
+import cz.cvut.fel.intermodal_planning.planner.model.SearchStatistics;
 import cz.cvut.fel.intermodal_planning.planner.model.TransportMode;
 import cz.cvut.fel.intermodal_planning.general.utils.ColorUtils;
+import org.json.JSONObject;
 
 /**
  * Created by Ondrej Prenek on 27/10/2017
@@ -40,4 +42,20 @@ public class ResponseBuilder {
         description += "}]}";
         return description;
     }
+
+    public static String buildSearchStatistics(SearchStatistics statistics) {
+        if (statistics == null) return "{}";
+
+        return new JSONObject()
+                .put("settledStates", statistics.settledStates)
+                .put("relaxedEdges", statistics.relaxedEdges)
+                .put("queuePushes", statistics.queuePushes)
+                .put("decreaseKeys", statistics.decreaseKeys)
+                .put("originCandidates", statistics.originCandidates)
+                .put("destinationCandidates", statistics.destinationCandidates)
+                .put("snapMicros", statistics.snapNanos / 1000)
+                .put("searchMicros", statistics.searchNanos / 1000)
+                .put("reconstructMicros", statistics.reconstructNanos / 1000)
+                .toString();
+    }
 }